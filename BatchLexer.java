@@ -0,0 +1,115 @@
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.stream.*;
+
+/**
+ * Lexes many files in parallel on a work-stealing pool. Every task runs its own LexicalAnalyzer
+ * (the scanner table itself is shared and read-only), and results come back in the order the files
+ * were given, whatever order they finished in.
+ */
+class BatchLexer {
+    static class Result {
+        final Path file;
+        final TokenBuffer tokens; // null when lexing failed
+        final String error;
+
+        Result(Path file, TokenBuffer tokens, String error) {
+            this.file = file;
+            this.tokens = tokens;
+            this.error = error;
+        }
+
+        @Override
+        public String toString() {
+            return file + ": " + (tokens != null ? tokens.size() + " tokens" : error);
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.out.println("usage: BatchLexer <directory|file>...");
+            return;
+        }
+        List<Path> files = new ArrayList<>();
+        for (String arg : args) {
+            files.addAll(sourceFiles(Paths.get(arg)));
+        }
+
+        long start = System.nanoTime();
+        List<Result> results = lex(files, ForkJoinPool.commonPool());
+        long elapsed = System.nanoTime() - start;
+
+        long tokens = 0;
+        int failed = 0;
+        for (Result result : results) {
+            System.out.println(result);
+            if (result.tokens != null) {
+                tokens += result.tokens.size();
+            } else {
+                failed++;
+            }
+        }
+        System.out.printf("%d files, %d tokens, %d failed in %.1f ms%n", results.size(), tokens, failed, elapsed / 1e6);
+    }
+
+    // The file itself, or every .c and .txt file under a directory, in path order.
+    static List<Path> sourceFiles(Path path) throws IOException {
+        if (!Files.isDirectory(path)) {
+            return List.of(path);
+        }
+        try (Stream<Path> walk = Files.walk(path)) {
+            return walk.filter(Files::isRegularFile)
+                .filter(p -> p.toString().endsWith(".c") || p.toString().endsWith(".txt"))
+                .sorted()
+                .collect(Collectors.toList());
+        }
+    }
+
+    static List<Result> lex(List<Path> files, ForkJoinPool pool) {
+        Result[] results = new Result[files.size()];
+        pool.invoke(new LexTask(files, results, 0, files.size()));
+        return Arrays.asList(results);
+    }
+
+    static Result lex(LexicalAnalyzer lexer, Path file) {
+        try {
+            return new Result(file, lexer.tokenize(file, new TokenBuffer()), null);
+        } catch (SyntaxError e) {
+            return new Result(file, null, e.getMessage());
+        } catch (IOException e) {
+            return new Result(file, null, "I/O error: " + e.getMessage());
+        }
+    }
+
+    // Splits the file range in halves until one file is left; idle workers steal the other halves.
+    private static class LexTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final List<Path> files;
+        private final Result[] results;
+        private final int from;
+        private final int to;
+
+        LexTask(List<Path> files, Result[] results, int from, int to) {
+            this.files = files;
+            this.results = results;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= 1) {
+                if (from < to) {
+                    results[from] = lex(new LexicalAnalyzer(), files.get(from));
+                }
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new LexTask(files, results, from, mid), new LexTask(files, results, mid, to));
+        }
+    }
+}
@@ -0,0 +1,408 @@
+import java.lang.management.ManagementFactory;
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Benchmarks for the lexer, the regex compiler and the passes over tokens, run without a harness
+ * library: each case is repeated until it has been warmed up, then timed over RUNS runs, and the
+ * median time per run is reported along with the bytes allocated per run (from the JVM's per-thread
+ * allocation counter, so other threads do not count). Inputs come from CorpusGenerator with fixed
+ * seeds, so numbers from different commits measure the same work.
+ */
+class Benchmarks {
+    private static final long WARMUP_NANOS = 2_000_000_000L;
+    private static final int RUNS = 15;
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+        (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private static Object sink; // keeps results alive so the work cannot be optimized away
+
+    interface Case {
+        Object run() throws Exception;
+    }
+
+    static class Measurement {
+        final long nanos;     // median time per run
+        final long allocated; // median bytes allocated per run
+
+        Measurement(long nanos, long allocated) {
+            this.nanos = nanos;
+            this.allocated = allocated;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Set<String> groups = new HashSet<>(Arrays.asList(args));
+        if (groups.isEmpty()) {
+            groups.addAll(List.of("lexer", "relex", "regex", "lazy", "pike", "bits", "symbols", "errors"));
+        }
+        if (groups.contains("lexer")) {
+            lexer();
+        }
+        if (groups.contains("relex")) {
+            relex();
+        }
+        if (groups.contains("regex")) {
+            regex();
+        }
+        if (groups.contains("lazy")) {
+            lazy();
+        }
+        if (groups.contains("pike")) {
+            pike();
+        }
+        if (groups.contains("bits")) {
+            bits();
+        }
+        if (groups.contains("symbols")) {
+            symbols();
+        }
+        if (groups.contains("errors")) {
+            errors();
+        }
+    }
+
+    /**
+     * One case of a group, set up and ready to run: the work that the groups below and the JMH
+     * benchmarks in jmh/ both time. The JMH classes live in a package, so they reach this one by
+     * reflection. units[0] is set to the characters each run reads and units[1] to the tokens
+     * (lexer) or source lines (symbols, errors) it covers.
+     *
+     * <ul>
+     * <li>lexer, "KB/errors": tokenize into a reused buffer, errors per 1000 lines</li>
+     * <li>regex, "operands x depth": NFA construction plus subset construction</li>
+     * <li>symbols, "KB": SymbolTableExtractor over tokens that are already lexed</li>
+     * <li>errors, "errors": a recovering lex with its diagnostics over 1 MB</li>
+     * </ul>
+     */
+    static Callable<Object> workload(String group, String param, long[] units) throws Exception {
+        switch (group) {
+            case "lexer": {
+                String[] kbAndErrors = param.split("/");
+                String source = CorpusGenerator.source(1, Integer.parseInt(kbAndErrors[0]) << 10, Integer.parseInt(kbAndErrors[1]));
+                LexicalAnalyzer lexer = new LexicalAnalyzer();
+                lexer.setRecovering(true);
+                TokenBuffer tokens = lexer.tokenize(source, new TokenBuffer());
+                units[0] = source.length();
+                units[1] = tokens.size();
+                return () -> lexer.tokenize(source, tokens);
+            }
+            case "regex": {
+                String[] operandsAndDepth = param.split("x");
+                int operands = Integer.parseInt(operandsAndDepth[0]);
+                int depth = Integer.parseInt(operandsAndDepth[1]);
+                String re = CorpusGenerator.regex(operands * 31 + depth, operands, depth);
+                units[0] = re.length();
+                return () -> {
+                    DFA dfa = new DFA(new NFA(re).build(new NfaManager()));
+                    dfa.createDFA();
+                    return dfa;
+                };
+            }
+            case "symbols": {
+                String source = CorpusGenerator.source(2, Integer.parseInt(param) << 10, 0);
+                LexicalAnalyzer lexer = new LexicalAnalyzer();
+                lexer.setRecovering(true);
+                TokenBuffer tokens = lexer.tokenize(source, new TokenBuffer());
+                units[0] = source.length();
+                units[1] = lines(source);
+                return () -> SymbolTableExtractor.extractSymbols(tokens);
+            }
+            case "errors": {
+                String source = CorpusGenerator.source(3, 1 << 20, Integer.parseInt(param));
+                LexicalAnalyzer lexer = new LexicalAnalyzer();
+                lexer.setRecovering(true);
+                TokenBuffer tokens = new TokenBuffer();
+                units[0] = source.length();
+                units[1] = lines(source);
+                return () -> {
+                    lexer.tokenize(source, tokens);
+                    return lexer.getDiagnostics();
+                };
+            }
+            default:
+                throw new IllegalArgumentException("unknown benchmark group " + group);
+        }
+    }
+
+    static Measurement measure(Case c) throws Exception {
+        long warmupEnd = System.nanoTime() + WARMUP_NANOS;
+        for (int i = 0; i < 3 || System.nanoTime() < warmupEnd; i++) {
+            sink = c.run();
+        }
+        long[] nanos = new long[RUNS];
+        long[] allocated = new long[RUNS];
+        for (int r = 0; r < RUNS; r++) {
+            long bytes = THREADS.getCurrentThreadAllocatedBytes();
+            long start = System.nanoTime();
+            sink = c.run();
+            nanos[r] = System.nanoTime() - start;
+            allocated[r] = THREADS.getCurrentThreadAllocatedBytes() - bytes;
+        }
+        Arrays.sort(nanos);
+        Arrays.sort(allocated);
+        return new Measurement(nanos[RUNS / 2], allocated[RUNS / 2]);
+    }
+
+    // tokenize throughput over clean and error-heavy sources of several sizes, into a reused buffer.
+    static void lexer() throws Exception {
+        System.out.println("lexer: tokenize(source, TokenBuffer), buffer reused");
+        System.out.printf("%-10s %-7s %10s %10s %10s %12s%n", "size", "errors", "ms", "MB/s", "Mtok/s", "B/token");
+        for (int size : new int[] {64 << 10, 1 << 20, 16 << 20}) {
+            for (int errors : new int[] {0, 100}) {
+                long[] units = new long[2];
+                Callable<Object> run = workload("lexer", (size >> 10) + "/" + errors, units);
+                Measurement m = measure(run::call);
+                System.out.printf("%-10s %-7s %10.2f %10.1f %10.2f %12.2f%n", size(size), errors + "/1000", m.nanos / 1e6,
+                    units[0] / (m.nanos / 1e9) / (1 << 20), units[1] / (m.nanos / 1e9) / 1e6,
+                    (double) m.allocated / units[1]);
+            }
+        }
+        String source = CorpusGenerator.source(1, 1 << 20, 0);
+        LexicalAnalyzer lexer = new LexicalAnalyzer();
+        Measurement m = measure(() -> lexer.tokenize(source));
+        int count = lexer.tokenize(source).size();
+        System.out.printf("%-10s %-7s %10.2f %10.1f %10.2f %12.2f  (tokenize(String), List<Token>)%n", size(1 << 20), "0/1000",
+            m.nanos / 1e6, source.length() / (m.nanos / 1e9) / (1 << 20), count / (m.nanos / 1e9) / 1e6,
+            (double) m.allocated / count);
+        System.out.println();
+    }
+
+    /**
+     * relex after one-character edits to a 50,000-line source: a character typed and deleted again
+     * at 16 places within a few lines of each other, and at 16 places spread over the whole file.
+     */
+    static void relex() throws Exception {
+        System.out.println("relex: one-character edits, us per edit");
+        String source = CorpusGenerator.source(4, 1_400_000, 0);
+        LexicalAnalyzer lexer = new LexicalAnalyzer();
+        lexer.setRecovering(true);
+        TokenBuffer tokens = new TokenBuffer();
+        Measurement full = measure(() -> lexer.tokenize(source, tokens));
+        System.out.printf("%d lines, %d tokens, full tokenize: %.1f us%n", lines(source), tokens.size(), full.nanos / 1e3);
+        for (int spread : new int[] {200, source.length() / 16}) {
+            int[] at = new int[16];
+            String[] edited = new String[16];
+            for (int i = 0; i < 16; i++) {
+                at[i] = source.length() / 2 + (i - 8) * spread;
+                edited[i] = source.substring(0, at[i]) + 'x' + source.substring(at[i]);
+            }
+            Measurement m = measure(() -> {
+                for (int i = 0; i < 16; i++) {
+                    lexer.relex(tokens, edited[i], at[i], 0, 1);
+                    lexer.relex(tokens, source, at[i], 1, 0);
+                }
+                return tokens;
+            });
+            System.out.printf("edits %s apart: %.2f us, %.1f B%n", spread == 200 ? "200 chars" : "1/16 file", m.nanos / 32e3,
+                m.allocated / 32.0);
+        }
+        System.out.println();
+    }
+
+    // NFA construction plus subset construction, by number of operands and nesting depth.
+    static void regex() throws Exception {
+        System.out.println("regex: new NFA(re).build + new DFA(nfa).createDFA");
+        System.out.printf("%-9s %-6s %10s %10s %12s%n", "operands", "depth", "us", "states", "KB");
+        for (int operands : new int[] {8, 32, 128}) {
+            for (int depth : new int[] {1, 4, 16}) {
+                Callable<Object> run = workload("regex", operands + "x" + depth, new long[2]);
+                Measurement m = measure(run::call);
+                System.out.printf("%-9d %-6d %10.1f %10d %12.1f%n", operands, depth, m.nanos / 1e3,
+                    ((DFA) sink).getStateCount(), m.allocated / 1024.0);
+            }
+        }
+        RegexCompiler compiler = new RegexCompiler(16);
+        String re = CorpusGenerator.regex(1, 32, 4);
+        compiler.compile(re);
+        Measurement m = measure(() -> {
+            Object table = null;
+            for (int i = 0; i < 1000; i++) {
+                table = compiler.compile(re);
+            }
+            return table;
+        });
+        System.out.printf("RegexCompiler.compile, cached: %.1f ns%n", m.nanos / 1000.0);
+        System.out.println();
+    }
+
+    /**
+     * (a|b)*a(a|b)...(a|b) with n trailing groups, whose full DFA has 2^(n+1) states, over 1 MB of
+     * random a and b: the full table (built once, only for small n) against LazyDFA with 4096 states.
+     */
+    static void lazy() throws Exception {
+        System.out.println("lazy: (a|b)*a(a|b){n} over 1 MB, ms per scan");
+        System.out.printf("%-4s %12s %12s %10s %10s %10s%n", "n", "full build", "full scan", "lazy scan", "states", "fallbacks");
+        Random random = new Random(1);
+        StringBuilder input = new StringBuilder(1 << 20);
+        for (int i = 0; i < 1 << 20; i++) {
+            input.append(random.nextBoolean() ? 'a' : 'b');
+        }
+        for (int n : new int[] {4, 8, 12, 16, 24}) {
+            StringBuilder re = new StringBuilder("(a|b)*a");
+            for (int i = 0; i < n; i++) {
+                re.append("(a|b)");
+            }
+            String build = "-";
+            String scan = "-";
+            if (n <= 12) {
+                long start = System.nanoTime();
+                ScannerGenerator generator = new ScannerGenerator();
+                generator.addRule(re.toString(), 0);
+                ScannerTable table = generator.generate();
+                build = String.format("%.1f", (System.nanoTime() - start) / 1e6);
+                scan = String.format("%.1f", measure(() -> table.match(input, 0, input.length())).nanos / 1e6);
+            }
+            LazyDFA lazy = new LazyDFA(re.toString(), 4096);
+            Measurement m = measure(() -> lazy.match(input, 0, input.length()));
+            System.out.printf("%-4d %12s %12s %10.1f %10d %10d%n", n, build, scan, m.nanos / 1e6, lazy.getStateCount(),
+                lazy.getFallbacks());
+        }
+        System.out.println();
+    }
+
+    /**
+     * PikeVM against java.util.regex: finding every match in 1 MB of source, matching (a|b)*a(a|b){12}
+     * against 64 KB (with the full table, build included, for scale), and a*a*a*a*a*a*b against
+     * n a's, which backtracking explores in about n^6 ways. Ends with the cost of compiling each kind of engine.
+     */
+    static void pike() throws Exception {
+        System.out.println("pike: PikeVM against java.util.regex, ms");
+        System.out.printf("%-34s %10s %16s %14s%n", "case", "PikeVM", "java.util.regex", "ScannerTable");
+        String source = CorpusGenerator.source(5, 1 << 20, 0);
+        String word = "[a-z]+\\d";
+        PikeVM finder = new PikeVM(word);
+        Pattern wordPattern = Pattern.compile(word);
+        System.out.printf("%-34s %10s %16s %14s%n", "find " + word + ", 1 MB", time(() -> {
+            int count = 0;
+            for (long found = finder.find(source, 0, source.length()); found != PikeVM.NONE;
+                found = finder.find(source, ScannerTable.end(found), source.length())) {
+                count++;
+            }
+            return count;
+        }), time(() -> {
+            int count = 0;
+            Matcher matcher = wordPattern.matcher(source);
+            while (matcher.find()) {
+                count++;
+            }
+            return count;
+        }), "-");
+
+        StringBuilder re = new StringBuilder("(a|b)*a");
+        for (int i = 0; i < 12; i++) {
+            re.append("(a|b)");
+        }
+        Random random = new Random(1);
+        StringBuilder input = new StringBuilder(64 << 10);
+        for (int i = 0; i < 64 << 10; i++) {
+            input.append(random.nextBoolean() ? 'a' : 'b');
+        }
+        PikeVM vm = new PikeVM(re.toString());
+        Pattern pattern = Pattern.compile(re.toString());
+        System.out.printf("%-34s %10s %16s %14s%n", "matches (a|b)*a(a|b){12}, 64 KB", time(() -> vm.matches(input)),
+            time(() -> pattern.matcher(input).matches()), time(() -> {
+                ScannerGenerator generator = new ScannerGenerator();
+                generator.addRule(re.toString(), 0);
+                return generator.generate().matches(input);
+            }));
+
+        String stars = "a*".repeat(6) + "b";
+        PikeVM backtrack = new PikeVM(stars);
+        Pattern backtrackPattern = Pattern.compile(stars);
+        for (int n : new int[] {12, 25, 50}) {
+            String as = "a".repeat(n);
+            System.out.printf("%-34s %10s %16s %14s%n", "matches " + stars + ", " + n + " a's", time(() -> backtrack.matches(as)),
+                time(() -> backtrackPattern.matcher(as).matches()), "-");
+        }
+
+        Measurement pike = measure(() -> new PikeVM(re.toString()));
+        Measurement table = measure(() -> {
+            ScannerGenerator generator = new ScannerGenerator();
+            generator.addRule(re.toString(), 0);
+            return generator.generate();
+        });
+        Measurement compiled = measure(() -> Pattern.compile(re.toString()));
+        System.out.printf("compile (a|b)*a(a|b){12}: PikeVM %.1f us, ScannerTable %.1f us, Pattern %.1f us%n%n", pike.nanos / 1e3,
+            table.nanos / 1e3, compiled.nanos / 1e3);
+    }
+
+    /**
+     * Every engine on (a|b)*a(a|b){n}, which has 2n+3 positions, matched against 1 MB of random a and b.
+     * The full table is only built for small n, and its build time is left out.
+     */
+    static void bits() throws Exception {
+        System.out.println("bits: (a|b)*a(a|b){n} over 1 MB, ms per scan");
+        System.out.printf("%-4s %10s %10s %10s %12s%n", "n", "table", "lazy", "pike", "bit-parallel");
+        Random random = new Random(1);
+        StringBuilder input = new StringBuilder(1 << 20);
+        for (int i = 0; i < 1 << 20; i++) {
+            input.append(random.nextBoolean() ? 'a' : 'b');
+        }
+        for (int n : new int[] {4, 12, 24, 30}) {
+            String re = "(a|b)*a" + "(a|b)".repeat(n);
+            String[] ms = new String[MatchEngine.Kind.values().length];
+            for (MatchEngine.Kind kind : MatchEngine.Kind.values()) {
+                if (kind == MatchEngine.Kind.TABLE && n > 12) {
+                    ms[kind.ordinal()] = "-";
+                    continue;
+                }
+                MatchEngine engine = MatchEngine.compile(re, kind);
+                ms[kind.ordinal()] = time(() -> engine.match(input, 0, input.length()));
+            }
+            System.out.printf("%-4d %10s %10s %10s %12s%n", n, ms[0], ms[1], ms[2], ms[3]);
+        }
+        System.out.println();
+    }
+
+    // Median ms of c, or what stopped it.
+    private static String time(Case c) throws Exception {
+        try {
+            return String.format("%.3f", measure(c).nanos / 1e6);
+        } catch (StackOverflowError e) {
+            return "stack overflow";
+        }
+    }
+
+    // SymbolTableExtractor over tokens that are already lexed, per source line.
+    static void symbols() throws Exception {
+        System.out.println("symbols: SymbolTableExtractor.extractSymbols(TokenBuffer)");
+        long[] units = new long[2];
+        Callable<Object> run = workload("symbols", "1024", units);
+        Measurement m = measure(run::call);
+        long lines = units[1];
+        System.out.printf("%d lines, %d symbols: %.1f ns/line, %.1f B/line%n%n", lines, ((SymbolTable) sink).size(),
+            (double) m.nanos / lines, (double) m.allocated / lines);
+    }
+
+    // What LexicalErrorHandler.checkErrors does, minus the printing: a recovering lex with its checks.
+    static void errors() throws Exception {
+        System.out.println("errors: recovering tokenize + diagnostics");
+        for (int errors : new int[] {0, 10, 100}) {
+            long[] units = new long[2];
+            Callable<Object> run = workload("errors", String.valueOf(errors), units);
+            Measurement m = measure(run::call);
+            long lines = units[1];
+            System.out.printf("%4d/1000 lines with errors, %6d diagnostics: %.1f ns/line, %.1f B/line%n", errors,
+                ((List<?>) sink).size(), (double) m.nanos / lines, (double) m.allocated / lines);
+        }
+        System.out.println();
+    }
+
+    private static int lines(String source) {
+        int lines = 0;
+        for (int i = 0; i < source.length(); i++) {
+            if (source.charAt(i) == '\n') {
+                lines++;
+            }
+        }
+        return lines;
+    }
+
+    private static String size(int bytes) {
+        return bytes >= 1 << 20 ? (bytes >> 20) + " MB" : (bytes >> 10) + " KB";
+    }
+}
@@ -0,0 +1,157 @@
+import java.util.BitSet;
+
+/**
+ * Matches patterns of at most 64 positions (characters and character classes, counting each
+ * occurrence) with the Glushkov automaton held in one long: bit p is set while position p is
+ * active. The automaton is read off the Thompson NFA, whose consuming states are exactly the
+ * positions. A character then costs a lookup of its mask and the union of the follow sets of the
+ * active positions, taken from a table per byte of the state. For a pattern that is a plain
+ * sequence, where every position is followed by the next one only, the union is a shift (Shift-And).
+ * The character masks are worked out per equivalence class of the pattern (see CharClasses), so
+ * any character costs one lookup of its class, and an ASCII one a single table read. There is
+ * nothing to determinize and no allocation while matching, and an instance is never modified after
+ * construction, so threads can share it.
+ */
+public class BitParallelMatcher implements MatchEngine {
+	public static final int MAX_POSITIONS = 64;
+	private static final int ASCII = 128;
+
+	private final int positions;
+	private final boolean nullable;
+	private final long first;
+	private final long last;
+	private final long[][] follow; // follow[k][b]: union of the follow sets of the positions in byte k of the state
+	private final boolean shift;   // follow(d) == d << 1, except for the last position
+	private final CharClasses classes;
+	private final long[] classMask; // classMask[k + 1]: positions that accept class k; classMask[0] is for no class
+	private final long[] ascii;     // classMask of each ASCII character, read directly
+
+	public BitParallelMatcher(String re) {
+		this(new IndexedNfa(new NFA(re).build(new NfaManager())));
+	}
+
+	public BitParallelMatcher(IndexedNfa nfa) {
+		int[] bit = new int[nfa.size()];
+		int count = 0;
+		for (int s = 0; s < nfa.size(); s++) {
+			bit[s] = isPosition(nfa, s) ? count++ : -1;
+		}
+		if (count > MAX_POSITIONS) {
+			throw new IllegalArgumentException("pattern has " + count + " positions, at most " + MAX_POSITIONS + " fit");
+		}
+		positions = count;
+		classes = new CharClasses(nfa);
+		classMask = new long[classes.count() + 1];
+		long[] followOf = new long[count];
+		long lastMask = 0;
+		for (int s = 0; s < nfa.size(); s++) {
+			if (bit[s] < 0)
+				continue;
+			int p = bit[s];
+			if (nfa.getEdge(s) == Cell.CCL) {
+				for (int k : classes.classesOf(nfa.getCharClass(s)))
+					classMask[k + 1] |= 1L << p;
+			}
+			else {
+				classMask[classes.classOf((char) nfa.getEdge(s)) + 1] |= 1L << p;
+			}
+			BitSet reach = nfa.closure(nfa.getNext(s));
+			followOf[p] = mask(reach, bit);
+			if (nfa.getEnd() != IndexedNfa.NONE && reach.get(nfa.getEnd()))
+				lastMask |= 1L << p;
+		}
+		BitSet initial = nfa.closure(nfa.getStart());
+		first = mask(initial, bit);
+		last = lastMask;
+		nullable = nfa.getEnd() != IndexedNfa.NONE && initial.get(nfa.getEnd());
+
+		boolean sequence = true;
+		for (int p = 0; p < count; p++) {
+			if (followOf[p] != (p + 1 < count ? 1L << (p + 1) : 0))
+				sequence = false;
+		}
+		shift = sequence && first == (count == 0 ? 0 : 1L);
+
+		follow = new long[(count + 7) / 8][256];
+		for (int k = 0; k < follow.length; k++) {
+			for (int b = 1; b < 256; b++) {
+				int low = Integer.numberOfTrailingZeros(b);
+				int p = k * 8 + low;
+				follow[k][b] = follow[k][b & (b - 1)] | (p < count ? followOf[p] : 0);
+			}
+		}
+		ascii = new long[ASCII];
+		for (int c = 0; c < ASCII; c++) {
+			ascii[c] = classMask[classes.classOf((char) c) + 1];
+		}
+	}
+
+	// Number of positions in re, to check whether it fits before building a matcher.
+	public static int positions(String re) {
+		IndexedNfa nfa = new IndexedNfa(new NFA(re).build(new NfaManager()));
+		int count = 0;
+		for (int s = 0; s < nfa.size(); s++) {
+			if (isPosition(nfa, s))
+				count++;
+		}
+		return count;
+	}
+
+	public int getPositions() {
+		return positions;
+	}
+
+	@Override
+	public long match(CharSequence src, int pos, int end) {
+		long d = 0;
+		int lastEnd = -1;
+		for (int i = pos; i < end; i++) {
+			d = (i == pos ? first : next(d)) & mask(src.charAt(i));
+			if (d == 0)
+				break;
+			if ((d & last) != 0)
+				lastEnd = i + 1;
+		}
+		return lastEnd < 0 ? ScannerTable.NONE : lastEnd;
+	}
+
+	@Override
+	public boolean matches(CharSequence src) {
+		if (src.length() == 0)
+			return nullable;
+		long d = first & mask(src.charAt(0));
+		for (int i = 1; i < src.length() && d != 0; i++) {
+			d = next(d) & mask(src.charAt(i));
+		}
+		return (d & last) != 0;
+	}
+
+	// Positions that can follow the active positions d.
+	private long next(long d) {
+		if (shift)
+			return d << 1;
+		long reach = 0;
+		for (int k = 0; d != 0; k++, d >>>= 8) {
+			reach |= follow[k][(int) d & 0xff];
+		}
+		return reach;
+	}
+
+	private long mask(char c) {
+		return c < ASCII ? ascii[c] : classMask[classes.classOf(c) + 1];
+	}
+
+	// A state that consumes a character: a Glushkov position.
+	private static boolean isPosition(IndexedNfa nfa, int s) {
+		return (nfa.getEdge(s) >= 0 || nfa.getEdge(s) == Cell.CCL) && nfa.getNext(s) != IndexedNfa.NONE;
+	}
+
+	private static long mask(BitSet states, int[] bit) {
+		long m = 0;
+		for (int s = states.nextSetBit(0); s >= 0; s = states.nextSetBit(s + 1)) {
+			if (bit[s] >= 0)
+				m |= 1L << bit[s];
+		}
+		return m;
+	}
+}
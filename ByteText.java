@@ -0,0 +1,74 @@
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Read-only character view of a byte buffer holding ASCII/UTF-8 text, one char per byte, so the
+ * scanner table can run over a mapped file without decoding it. Non-ASCII bytes show up as chars
+ * 0x80-0xFF; only {@link #subSequence} decodes, and it returns the UTF-8 text of the byte range.
+ * The view covers the buffer's remaining bytes, from its position to its limit, and index 0 is
+ * the position.
+ */
+class ByteText implements CharSequence {
+    private final ByteBuffer bytes;
+
+    public ByteText(ByteBuffer bytes) {
+        this.bytes = bytes.slice();
+    }
+
+    @Override
+    public int length() {
+        return bytes.limit();
+    }
+
+    @Override
+    public char charAt(int index) {
+        return (char) (bytes.get(index) & 0xff);
+    }
+
+    // True for the second and later bytes of a UTF-8 sequence.
+    public boolean isContinuation(int index) {
+        return (bytes.get(index) & 0xc0) == 0x80;
+    }
+
+    /**
+     * Length of bytes [start, end) once decoded, in chars: one per UTF-8 sequence, and two for a
+     * four-byte one, which decodes to a surrogate pair. Columns count these, as over a String.
+     */
+    public int charCount(int start, int end) {
+        int count = 0;
+        for (int i = start; i < end; i++) {
+            count += width(bytes.get(i));
+        }
+        return count;
+    }
+
+    // Chars the byte adds to the decoded text: none for a continuation byte, two for the lead of a four-byte sequence.
+    static int width(byte b) {
+        return (b & 0xc0) == 0x80 ? 0 : (b & 0xf8) == 0xf0 ? 2 : 1;
+    }
+
+    // The character starting at index, decoded.
+    public String charText(int index) {
+        int end = index + 1;
+        while (end < length() && isContinuation(end)) {
+            end++;
+        }
+        return text(index, end);
+    }
+
+    public String text(int start, int end) {
+        byte[] buf = new byte[end - start];
+        bytes.get(start, buf);
+        return new String(buf, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        return text(start, end);
+    }
+
+    @Override
+    public String toString() {
+        return text(0, length());
+    }
+}
@@ -1,50 +1,88 @@
-public class Cell {
-	public static final int EPSILON = -1;
-	public static final int EMPTY = -2; 
-
-	private int edge;
-
-	public int getEdge() {
-		return edge;
-	}
-
-	public void setEdge(int type) {
-		edge = type;
-	}
-
-	public Cell next; 
-	public Cell next2; 
-	private int state;
-	private boolean visited = false;
-	
-	public void setVisited() {
-		visited = true;
-	}
-
-	public void setUnVisited() {
-		visited = false;
-	}
-	
-	public boolean isVisited() {
-		return visited;
-	}
-
-	public void setState(int num) {
-		state = num;
-	}
-
-	public int getState() {
-		return state;
-	}
-
-
-	public void clearState() {
-    	next = next2 = null;
-    	state = -1;		
-	}
-	
-	@Override
-	public String toString() {
-		return (char)edge+" "+state+""+isVisited();
-	}
-}
\ No newline at end of file
+// A lightweight handle onto one state stored in a NfaManager arena.
+public class Cell {
+	public static final int EPSILON = -1;
+	public static final int EMPTY = -2;
+	// Edge on any character of the set returned by getCharClass().
+	public static final int CCL = -3;
+
+	private final NfaManager manager;
+	private final int index;
+
+	public Cell(NfaManager manager, int index) {
+		this.manager = manager;
+		this.index = index;
+	}
+
+	public NfaManager getManager() {
+		return manager;
+	}
+
+	public int getIndex() {
+		return index;
+	}
+
+	public int getEdge() {
+		return manager.getEdge(index);
+	}
+
+	public void setEdge(int type) {
+		manager.setEdge(index, type);
+	}
+
+	public Cell getNext() {
+		return manager.cell(manager.getNext(index));
+	}
+
+	public void setNext(Cell cell) {
+		manager.setNext(index, cell == null ? NfaManager.NONE : cell.index);
+	}
+
+	public Cell getNext2() {
+		return manager.cell(manager.getNext2(index));
+	}
+
+	public void setNext2(Cell cell) {
+		manager.setNext2(index, cell == null ? NfaManager.NONE : cell.index);
+	}
+
+	public int getCharClass() {
+		return manager.getCharClass(index);
+	}
+
+	public void setCharClass(int id) {
+		manager.setCharClass(index, id);
+	}
+
+	public void setState(int num) {
+		manager.setState(index, num);
+	}
+
+	public int getState() {
+		return manager.getState(index);
+	}
+
+
+	public void clearState() {
+		manager.setNext(index, NfaManager.NONE);
+		manager.setNext2(index, NfaManager.NONE);
+		manager.setState(index, -1);
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (!(o instanceof Cell))
+			return false;
+		Cell other = (Cell) o;
+		return manager == other.manager && index == other.index;
+	}
+
+	@Override
+	public int hashCode() {
+		return index;
+	}
+
+	@Override
+	public String toString() {
+		return (char)getEdge()+" "+getState();
+	}
+}
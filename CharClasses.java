@@ -0,0 +1,116 @@
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Partition of the whole char range into equivalence classes: two characters share a class when
+ * every edge of the NFA treats them alike, so a DFA needs one column per class instead of one per
+ * character. Characters that no edge matches have no class.
+ */
+public class CharClasses {
+	public static final int NONE = -1;
+	private static final int CHARS = Character.MAX_VALUE + 1;
+
+	private final int[] classOf = new int[CHARS];
+	private final int count;
+	private final int[][] setClasses;
+	private final String[] label;
+
+	public CharClasses(IndexedNfa nfa) {
+		// refine: every character set splits each class it cuts; 0 means "matched by no edge"
+		int[] id = classOf;
+		int ids = 1;
+		for (int j = 0; j < nfa.charSetCount(); j++) {
+			BitSet set = nfa.getCharSet(j);
+			int[] remap = new int[ids];
+			Arrays.fill(remap, NONE);
+			for (int c = set.nextSetBit(0); c >= 0 && c < CHARS; c = set.nextSetBit(c + 1)) {
+				if (remap[id[c]] == NONE)
+					remap[id[c]] = ids++;
+				id[c] = remap[id[c]];
+			}
+		}
+		// a character on a single-character edge is always alone in its class
+		for (int s = 0; s < nfa.size(); s++) {
+			if (nfa.getEdge(s) >= 0)
+				id[nfa.getEdge(s)] = ids++;
+		}
+
+		int[] compact = new int[ids];
+		Arrays.fill(compact, NONE);
+		int n = 0;
+		for (int c = 0; c < CHARS; c++) {
+			if (id[c] == 0) {
+				classOf[c] = NONE;
+				continue;
+			}
+			if (compact[id[c]] == NONE)
+				compact[id[c]] = n++;
+			classOf[c] = compact[id[c]];
+		}
+		count = n;
+
+		setClasses = new int[nfa.charSetCount()][];
+		for (int j = 0; j < setClasses.length; j++) {
+			BitSet covered = new BitSet(count);
+			BitSet set = nfa.getCharSet(j);
+			for (int c = set.nextSetBit(0); c >= 0 && c < CHARS; c = set.nextSetBit(c + 1)) {
+				covered.set(classOf[c]);
+			}
+			setClasses[j] = covered.stream().toArray();
+		}
+		label = labels();
+	}
+
+	public int count() {
+		return count;
+	}
+
+	public int classOf(char c) {
+		return classOf[c];
+	}
+
+	// Classes making up the NFA character set with the given id.
+	public int[] classesOf(int charSet) {
+		return setClasses[charSet];
+	}
+
+	public String label(int k) {
+		return label[k];
+	}
+
+	public int[] toArray() {
+		return classOf.clone();
+	}
+
+	private String[] labels() {
+		StringBuilder[] buf = new StringBuilder[count];
+		int[] size = new int[count];
+		int[] ranges = new int[count];
+		for (int c = 0; c < CHARS; c++) {
+			int k = classOf[c];
+			if (k == NONE)
+				continue;
+			size[k]++;
+			if (c > 0 && classOf[c - 1] == k)
+				continue;
+			int hi = c;
+			while (hi + 1 < CHARS && classOf[hi + 1] == k)
+				hi++;
+			if (buf[k] == null)
+				buf[k] = new StringBuilder();
+			if (++ranges[k] > 3) {
+				if (ranges[k] == 4)
+					buf[k].append("...");
+				continue;
+			}
+			buf[k].append(NFA.label((char) c));
+			if (hi > c)
+				buf[k].append(hi > c + 1 ? "-" : "").append(NFA.label((char) hi));
+		}
+		String[] label = new String[count];
+		for (int k = 0; k < count; k++) {
+			label[k] = size[k] == 1 ? buf[k].toString() : "[" + buf[k] + "]";
+		}
+		return label;
+	}
+}
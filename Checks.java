@@ -0,0 +1,759 @@
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+
+/**
+ * Differential checks, run without a test framework: each group computes the same result in two
+ * ways over inputs generated with fixed seeds, and reports how many cases it tried and how many
+ * disagreed, printing the first few disagreements. The exit status is 1 if any group found one.
+ */
+class Checks {
+    private static final int SHOWN = 5; // disagreements printed per group
+
+    private static boolean failed;
+
+    // Cases and disagreements of one group.
+    private static class Tally {
+        private final String group;
+        private long cases;
+        private long mismatches;
+
+        Tally(String group) {
+            this.group = group;
+        }
+
+        void check(boolean ok, Supplier<String> detail) {
+            cases++;
+            if (!ok && mismatches++ < SHOWN) {
+                System.out.println(group + ": " + detail.get());
+            }
+        }
+
+        void report() {
+            System.out.printf("%s: %d cases, %d mismatches%n", group, cases, mismatches);
+            failed |= mismatches > 0;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Set<String> groups = new HashSet<>(Arrays.asList(args));
+        if (groups.isEmpty()) {
+            groups.addAll(List.of("minimize", "engines", "bytes", "parallel", "relex", "table", "cache", "stream", "scopes", "suggest"));
+        }
+        if (groups.contains("minimize")) {
+            minimize();
+        }
+        if (groups.contains("engines")) {
+            engines();
+        }
+        if (groups.contains("bytes")) {
+            bytes();
+        }
+        if (groups.contains("parallel")) {
+            parallel();
+        }
+        if (groups.contains("relex")) {
+            relex();
+        }
+        if (groups.contains("table")) {
+            table();
+        }
+        if (groups.contains("cache")) {
+            cache();
+        }
+        if (groups.contains("stream")) {
+            stream();
+        }
+        if (groups.contains("scopes")) {
+            scopes();
+        }
+        if (groups.contains("suggest")) {
+            suggest();
+        }
+        if (failed) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * DFA.minimize against the DFA it was made from and against PikeVM, which simulates the NFA
+     * without determinizing it, on random patterns and random short inputs: all three must accept
+     * the same inputs, and minimizing the minimized DFA again must not merge any more states.
+     */
+    static void minimize() {
+        Tally tally = new Tally("minimize");
+        Random random = new Random(3);
+        for (int p = 0; p < 500; p++) {
+            String re = CorpusGenerator.regex(p, 1 + random.nextInt(12), random.nextInt(5));
+            DFA dfa = new DFA(new NFA(re).build(new NfaManager()));
+            dfa.createDFA();
+            DFA min = dfa.minimize();
+            PikeVM vm = new PikeVM(re);
+            tally.check(min.minimize().getStateCount() == min.getStateCount(), () -> re + " is not minimal");
+            for (int k = 0; k < 200; k++) {
+                String input = input(random, "abcdefgh0123x", 20);
+                boolean expected = vm.matches(input);
+                tally.check(accepts(dfa, input) == expected && accepts(min, input) == expected,
+                    () -> re + " on \"" + input + "\": PikeVM " + expected + ", DFA " + accepts(dfa, input)
+                        + ", minimized " + accepts(min, input));
+            }
+        }
+        tally.report();
+    }
+
+    /**
+     * Every MatchEngine kind, and LazyDFA with caches of 2, 3, 8 and 1000 states so that flushes and
+     * the fallback to NFA simulation happen, on random patterns and inputs. match at every position
+     * must agree with ScannerTable, and matches with java.util.regex. A java.util.regex match that
+     * backtracks past a budget of character reads is cut off and counted as skipped. Some patterns
+     * and inputs have non-ASCII characters, literal and in negated classes. PikeVM.find from
+     * every position, to the end and to a random end, must agree with findByMatch.
+     */
+    static void engines() {
+        Tally tally = new Tally("engines");
+        Random random = new Random(1);
+        long skipped = 0;
+        for (int p = 0; p < 400; p++) {
+            String generated = CorpusGenerator.regex(p, 1 + random.nextInt(12), random.nextInt(5));
+            String re = p % 8 == 0 ? "(a|b)*a" + "(a|b)".repeat(p % 9)
+                : p % 8 == 4 ? "(" + generated + "|[^a-d]\\u00e9)+[^\\u2603a]*" : generated;
+            String alphabet = p % 8 == 0 ? "ab" : p % 8 == 4 ? "abcdefgh0123x\u00e9\u2603\u4e2d" : "abcdefgh0123x";
+            Map<String, MatchEngine> engines = new LinkedHashMap<>();
+            for (MatchEngine.Kind kind : MatchEngine.Kind.values()) {
+                engines.put(kind.toString(), MatchEngine.compile(re, kind));
+            }
+            for (int states : new int[] { 2, 3, 8, 1000 }) {
+                engines.put("LAZY " + states, new LazyDFA(re, states));
+            }
+            MatchEngine table = engines.get(MatchEngine.Kind.TABLE.toString());
+            PikeVM vm = (PikeVM) engines.get(MatchEngine.Kind.PIKE.toString());
+            Pattern pattern = Pattern.compile(re);
+            for (int k = 0; k < 100; k++) {
+                String input = input(random, alphabet, 30);
+                Boolean expected;
+                try {
+                    expected = pattern.matcher(new Budget(input, 1 << 16)).matches();
+                } catch (Budget.Exceeded e) {
+                    expected = null;
+                    skipped++;
+                }
+                for (Map.Entry<String, MatchEngine> entry : engines.entrySet()) {
+                    MatchEngine engine = entry.getValue();
+                    boolean matches = engine.matches(input);
+                    Boolean regex = expected;
+                    tally.check(regex == null || matches == regex,
+                        () -> entry.getKey() + " " + re + " on \"" + input + "\": matches " + matches + ", java.util.regex " + regex);
+                    for (int pos = 0; pos <= input.length(); pos++) {
+                        long match = engine.match(input, pos, input.length());
+                        long reference = table.match(input, pos, input.length());
+                        int at = pos;
+                        tally.check(match == reference, () -> entry.getKey() + " " + re + " on \"" + input + "\" at " + at + ": match "
+                            + match + ", ScannerTable " + reference);
+                    }
+                }
+                for (int pos = 0; pos <= input.length(); pos++) {
+                    for (int end : new int[] { input.length(), pos + random.nextInt(input.length() - pos + 1) }) {
+                        long found = vm.find(input, pos, end);
+                        long reference = findByMatch(table, input, pos, end);
+                        int at = pos;
+                        tally.check(found == reference, () -> "find " + re + " in \"" + input + "\" [" + at + ", " + end + "): "
+                            + found(found) + ", by match " + found(reference));
+                    }
+                }
+            }
+        }
+        tally.report();
+        System.out.printf("engines: %d java.util.regex matches over budget, skipped%n", skipped);
+    }
+
+    // Leftmost-longest match in src[pos, end) by trying a longest match at each start in turn, packed as by PikeVM.find.
+    private static long findByMatch(MatchEngine engine, String src, int pos, int end) {
+        for (int from = pos; from < end; from++) {
+            long match = engine.match(src, from, end);
+            if (match != ScannerTable.NONE) {
+                return ((long) from << 32) | ScannerTable.end(match);
+            }
+        }
+        return PikeVM.NONE;
+    }
+
+    private static String found(long found) {
+        return found == PikeVM.NONE ? "none" : "[" + PikeVM.start(found) + ", " + ScannerTable.end(found) + ")";
+    }
+
+    // Text that lets a backtracking matcher read only so many characters.
+    private static class Budget implements CharSequence {
+        static class Exceeded extends RuntimeException {
+            private static final long serialVersionUID = 1L;
+        }
+
+        private final String text;
+        private long reads;
+
+        Budget(String text, long reads) {
+            this.text = text;
+            this.reads = reads;
+        }
+
+        @Override
+        public int length() {
+            return text.length();
+        }
+
+        @Override
+        public char charAt(int index) {
+            if (--reads < 0) {
+                throw new Exceeded();
+            }
+            return text.charAt(index);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return text.substring(start, end);
+        }
+
+        @Override
+        public String toString() {
+            return text;
+        }
+    }
+
+    private static boolean accepts(DFA dfa, String input) {
+        int state = 0;
+        for (int i = 0; i < input.length() && state != DFA.NONE; i++) {
+            int column = dfa.getClasses().classOf(input.charAt(i));
+            state = column == CharClasses.NONE ? DFA.NONE : dfa.getTransition(state, column);
+        }
+        return state != DFA.NONE && dfa.getAccept(state) != DFA.NONE;
+    }
+
+    // Up to maxLength characters drawn from alphabet.
+    private static String input(Random random, String alphabet, int maxLength) {
+        StringBuilder out = new StringBuilder();
+        int length = random.nextInt(maxLength + 1);
+        for (int i = 0; i < length; i++) {
+            out.append(alphabet.charAt(random.nextInt(alphabet.length())));
+        }
+        return out.toString();
+    }
+
+    /**
+     * LexicalAnalyzer over a String and over the same text as UTF-8 bytes, in recovering mode: every
+     * token and diagnostic must have the same text, line and column. The sources are generated with
+     * and without errors, and again with non-ASCII characters in comments, names and literals.
+     */
+    static void bytes() throws Exception {
+        Tally tally = new Tally("bytes");
+        List<String> sources = new ArrayList<>(List.of(
+            "char c = 'é'\nint x = 1;\n",
+            "int x = 1; // café ☃\nstring s = \"naïve ü\"; x = 2.1234567\n",
+            "int € = 3;\n x é y\nfloat y = x\n",
+            "int x = 1; // \ud83d\ude00 smile\nint y = x\nstring s = \"\ud83d\ude00\ud83c\udf89\"; y = 2\n",
+            "int \ud83d\ude00 = 3;\n x \ud83d\ude00\ud83d\ude00 y\nfloat z = x\n\"\ud834\udd1e open\n"));
+        for (int seed = 1; seed <= 20; seed++) {
+            String source = CorpusGenerator.source(seed, 16 << 10, seed % 2 == 0 ? 0 : 50);
+            sources.add(source);
+            sources.add(source.replace("count", "coünt").replace("function", "fünction ☃")
+                .replace("= 1", "= 'é'"));
+        }
+        for (String source : sources) {
+            List<String> chars = lex(source, null);
+            List<String> bytes = lex(source, ByteBuffer.wrap(source.getBytes(StandardCharsets.UTF_8)));
+            tally.check(chars.equals(bytes), () -> firstDifference(chars, bytes));
+        }
+        tally.report();
+    }
+
+    /**
+     * ParallelLexer against sequential lexing, with 2 to 1000 chunks: every token, position and
+     * symbol, or the first error, must be the same. Besides plain generated sources there are ones
+     * with block comments and blank runs many lines long, so that cuts fall inside them, and ones
+     * with an error part way through or a comment left open at the end.
+     */
+    static void parallel() {
+        Tally tally = new Tally("parallel");
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        List<String> sources = new ArrayList<>();
+        for (int seed = 1; seed <= 12; seed++) {
+            String source = CorpusGenerator.source(seed, 4 << seed % 7 << 10, 0);
+            sources.add(source);
+            sources.add(source.replace("/* function", "/*\n\n long\n comment\n\n */\n\n\n   \n/* function"));
+            sources.add(source.replace("\n", "\n        \n"));
+            sources.add(CorpusGenerator.source(seed, 16 << 10, 5 * seed));
+            sources.add(source + "/* left open\n" + source);
+            sources.add(source.substring(0, source.length() / 2) + "\"open string\n" + source);
+        }
+        for (String source : sources) {
+            String expected = ParallelLexer.describe(source, -1, pool);
+            for (int chunks : new int[] { 2, 3, 8, 64, 1000 }) {
+                String actual = ParallelLexer.describe(source, chunks, pool);
+                tally.check(actual.equals(expected), () -> chunks + " chunks of a " + source.length() + "-character source: "
+                    + firstDifference(Arrays.asList(expected.split("\n")), Arrays.asList(actual.split("\n"))));
+            }
+        }
+        tally.report();
+    }
+
+    /**
+     * LexicalAnalyzer.relex against a full tokenize after each of a run of random edits to generated
+     * sources with errors: insertions, deletions and replacements of up to 40 characters, drawn from
+     * characters that open and close comments, strings and numbers. Every token must agree in type,
+     * position, line, column, symbol and text. After a mismatch the buffer is lexed afresh.
+     */
+    static void relex() throws SyntaxError {
+        Tally tally = new Tally("relex");
+        String alphabet = "ab1 \n\"'/*.;x_@(9\t";
+        for (int seed = 1; seed <= 3; seed++) {
+            Random random = new Random(seed);
+            String text = CorpusGenerator.source(seed, 10_000, 50);
+            LexicalAnalyzer incremental = new LexicalAnalyzer();
+            incremental.setRecovering(true);
+            LexicalAnalyzer full = new LexicalAnalyzer();
+            full.setRecovering(true);
+            TokenBuffer tokens = incremental.tokenize(text, new TokenBuffer());
+            for (int e = 0; e < 3000; e++) {
+                int offset = random.nextInt(text.length() + 1);
+                int removed = Math.min(random.nextInt(4) == 0 ? random.nextInt(40) : random.nextInt(2), text.length() - offset);
+                String inserted = input(random, alphabet, random.nextInt(3) == 0 ? 30 : 1);
+                text = text.substring(0, offset) + inserted + text.substring(offset + removed);
+                incremental.relex(tokens, text, offset, removed, inserted.length());
+                List<String> expected = tokens(full.tokenize(text, new TokenBuffer()));
+                List<String> actual = tokens(tokens);
+                String edit = "edit at " + offset + " removing " + removed + " inserting " + inserted.length();
+                tally.check(actual.equals(expected), () -> edit + ": " + firstDifference(expected, actual));
+                if (!actual.equals(expected)) {
+                    tokens = incremental.tokenize(text, new TokenBuffer());
+                }
+            }
+        }
+        tally.report();
+    }
+
+    /**
+     * ScannerTable.save and load on tables generated from random rule sets: a saved table must load
+     * back equal to the one generated. A file with a flipped bit, cut short, from another format
+     * version, with a transition out of range or with a rule the generator does not have, or one
+     * that was saved for other rules, must load as null. After each bad file, generate(file) must
+     * rebuild the same table and leave a file that loads again.
+     */
+    static void table() throws IOException {
+        Tally tally = new Tally("table");
+        Random random = new Random(4);
+        Path dir = Files.createTempDirectory("checks");
+        Path file = dir.resolve("scanner.table");
+        try {
+            for (int g = 0; g < 40; g++) {
+                ScannerGenerator generator = new ScannerGenerator();
+                int rules = 1 + random.nextInt(6);
+                for (int r = 0; r < rules; r++) {
+                    generator.addRule(CorpusGenerator.regex(g * 8 + r, 1 + random.nextInt(6), random.nextInt(3)), random.nextInt(3));
+                }
+                ScannerTable fresh = generator.generate();
+                long fingerprint = generator.fingerprint();
+                fresh.save(file, fingerprint);
+                byte[] saved = Files.readAllBytes(file);
+                tally.check(fresh.equals(ScannerTable.load(file, fingerprint, rules)), () -> "loaded table differs from the generated one");
+                tally.check(ScannerTable.load(file, fingerprint + 1, rules) == null, () -> "loaded a table saved for other rules");
+                tally.check(ScannerTable.load(file, fingerprint, 0) == null, () -> "loaded a table with rules the generator does not have");
+
+                Map<String, byte[]> bad = new LinkedHashMap<>();
+                byte[] flipped = saved.clone();
+                flipped[random.nextInt(flipped.length)] ^= 1 << random.nextInt(8);
+                bad.put("a flipped bit", flipped);
+                bad.put("a truncated file", Arrays.copyOf(saved, random.nextInt(saved.length)));
+                ByteBuffer version = ByteBuffer.wrap(saved.clone());
+                version.putInt(4, ScannerTable.VERSION + 1);
+                bad.put("another version", sign(version));
+                ByteBuffer transition = ByteBuffer.wrap(saved.clone());
+                int states = transition.getInt(20);
+                int runs = transition.getInt(24);
+                transition.putInt(28 + runs * 8, states);
+                bad.put("a transition out of range", sign(transition));
+                for (Map.Entry<String, byte[]> entry : bad.entrySet()) {
+                    Files.write(file, entry.getValue());
+                    tally.check(ScannerTable.load(file, fingerprint, rules) == null, () -> "loaded " + entry.getKey());
+                    tally.check(fresh.equals(generator.generate(file)), () -> "rebuilt table differs after " + entry.getKey());
+                    tally.check(fresh.equals(ScannerTable.load(file, fingerprint, rules)), () -> "no good file rebuilt after " + entry.getKey());
+                }
+            }
+            Files.delete(file);
+            tally.check(ScannerTable.load(file, 0, 1) == null, () -> "loaded a missing file");
+        } finally {
+            Files.deleteIfExists(file);
+            Files.delete(dir);
+        }
+        tally.report();
+    }
+
+    // The file's bytes with its trailing CRC-32 recomputed, so that only the other checks in load can reject it.
+    private static byte[] sign(ByteBuffer file) {
+        CRC32 crc = new CRC32();
+        crc.update(file.array(), 0, file.limit() - 4);
+        file.putInt(file.limit() - 4, (int) crc.getValue());
+        return file.array();
+    }
+
+    /**
+     * NFA.normalize, which RegexCompiler keys its cache on, and the cache's accounting. Random
+     * patterns are spelled again with their operands written other ways (escapes, bracket
+     * expressions, reordered ranges). Both spellings must normalize to the same key. The pattern,
+     * its normalized form and the table the compiler serves for it must accept the same random
+     * inputs, and the first two must find the same longest match at their start. A fixed run of compiles through a cache of three tables must then come to the
+     * expected hits, misses and evictions, and spellings of one pattern must share one table.
+     */
+    static void cache() {
+        Tally tally = new Tally("cache");
+        Random random = new Random(5);
+        RegexCompiler compiler = new RegexCompiler(16);
+        for (int p = 0; p < 300; p++) {
+            String re = CorpusGenerator.regex(p, 1 + random.nextInt(10), random.nextInt(4)) + (p % 3 == 0 ? "\\+" : "")
+                + (p % 3 == 1 ? "[x" + input(random, "abcdefgh0123", 5) + "]b" : "");
+            String spelled = respell(re, random);
+            String key = NFA.normalize(spelled);
+            tally.check(key.equals(NFA.normalize(re)), () -> re + " and " + spelled + " normalize to " + NFA.normalize(re) + " and " + key);
+            PikeVM original = new PikeVM(spelled);
+            PikeVM normalized = new PikeVM(key);
+            for (int k = 0; k < 100; k++) {
+                String input = input(random, "abcdefgh0123x+", 20);
+                boolean expected = original.matches(input);
+                boolean cached = compiler.matches(spelled, input);
+                tally.check(normalized.matches(input) == expected && cached == expected, () -> spelled + " on \"" + input + "\": "
+                    + expected + ", normalized " + key + " " + normalized.matches(input) + ", cached " + cached);
+                long longest = original.match(input, 0, input.length());
+                tally.check(normalized.match(input, 0, input.length()) == longest, () -> spelled + " on \"" + input
+                    + "\": longest match " + longest + ", normalized " + key + " " + normalized.match(input, 0, input.length()));
+            }
+        }
+
+        // a[bc]* three times (twice as spelled first, then as a[cb]*), then [0-9]+, x|y and \d\d, which
+        // evicts it; then a[bc]* again, a miss, x|y, a hit, and [0-9]+, evicted meanwhile.
+        RegexCompiler lru = new RegexCompiler(3);
+        String[] run = { "a[bc]*", "a[bc]*", "a[cb]*", "[0-9]+", "x|y", "\\d\\d", "a[bc]*", "x|y", "[0-9]+" };
+        ScannerTable[] served = new ScannerTable[run.length];
+        for (int i = 0; i < run.length; i++) {
+            served[i] = lru.compile(run[i]);
+        }
+        tally.check(served[1] == served[0] && served[2] == served[0], () -> "spellings of a[bc]* got separate tables");
+        tally.check(served[6] != served[0], () -> "a[bc]* was served from the cache after it was evicted");
+        String counts = lru.getHits() + " hits, " + lru.getMisses() + " misses, " + lru.getEvictions() + " evictions, " + lru.size() + " tables";
+        tally.check(counts.equals("3 hits, 6 misses, 3 evictions, 3 tables"), () -> "after a fixed run: " + counts);
+        tally.report();
+    }
+
+    // re with each literal, digit class and bracket expression written one of several equivalent ways: ranges split, lists shuffled.
+    private static String respell(String re, Random random) {
+        StringBuilder out = new StringBuilder();
+        for (int i = 0; i < re.length(); i++) {
+            char c = re.charAt(i);
+            if (c == '\\' && re.charAt(i + 1) == 'd') {
+                out.append(new String[] { "\\d", "[0-9]", "[0123456789]", "[5-90-4]" }[random.nextInt(4)]);
+                i++;
+            } else if (c == '\\') {
+                char e = re.charAt(++i);
+                out.append(new String[] { "\\" + e, "[" + e + "]", String.format("\\x%02x", (int) e) }[random.nextInt(3)]);
+            } else if (c == '[') {
+                int close = re.indexOf(']', i);
+                char lo = re.charAt(i + 1);
+                char hi = re.charAt(close - 1);
+                if (close == i + 4 && re.charAt(i + 2) == '-' && hi > lo && random.nextBoolean()) {
+                    char mid = (char) (lo + random.nextInt(hi - lo));
+                    out.append('[').append((char) (mid + 1)).append('-').append(hi).append(lo).append('-').append(mid).append(']');
+                } else if (re.indexOf('-', i) > close || re.indexOf('-', i) < 0) {
+                    List<Character> members = new ArrayList<>();
+                    for (int k = i + 1; k < close; k++) {
+                        members.add(re.charAt(k));
+                    }
+                    Collections.shuffle(members, random);
+                    out.append('[');
+                    members.forEach(out::append);
+                    out.append(']');
+                } else {
+                    out.append(re, i, close + 1);
+                }
+                i = close;
+            } else if (Character.isLetterOrDigit(c)) {
+                out.append(new String[] { String.valueOf(c), "[" + c + "]", String.format("\\x%02x", (int) c),
+                    String.format("\\u%04X", (int) c) }[random.nextInt(4)]);
+            } else {
+                out.append(c);
+            }
+        }
+        return out.toString();
+    }
+
+    /**
+     * TokenStream with buffers of 1 to 64 characters, fed by a reader that returns a few characters
+     * at a time, against LexicalAnalyzer.tokenize: the same tokens through EOF, or the same
+     * SyntaxError with the same tokens before it. Small buffers make most tokens run into the end
+     * of the buffered text (MORE) and longer ones outgrow the buffer, which then doubles. Errors are
+     * put at random offsets, so they fall at and around buffer edges.
+     */
+    static void stream() throws IOException {
+        Tally tally = new Tally("stream");
+        Random random = new Random(6);
+        List<String> sources = new ArrayList<>(List.of("", "x", "/* open", "\"open", "int x = 1.23456789; // end"));
+        for (int seed = 1; seed <= 4; seed++) {
+            String source = CorpusGenerator.source(seed, 3 << 10, 0);
+            sources.add(source);
+            sources.add(source.replace("/* function", "/* " + "long comment ".repeat(20) + "function"));
+            sources.add(CorpusGenerator.source(seed, 3 << 10, 200));
+            for (int k = 0; k < 4; k++) {
+                int at = random.nextInt(source.length());
+                sources.add(source.substring(0, at) + (k % 2 == 0 ? "@" : "\"") + source.substring(at));
+            }
+        }
+        for (String source : sources) {
+            List<String> expected = new ArrayList<>();
+            try {
+                for (Token token : new LexicalAnalyzer().tokenize(source)) {
+                    expected.add(token.toString());
+                }
+            } catch (SyntaxError e) {
+                LexicalAnalyzer recovering = new LexicalAnalyzer();
+                recovering.setRecovering(true);
+                TokenBuffer tokens = lexRecovering(recovering, source);
+                for (int i = 0; i < tokens.size() && tokens.start(i) < errorOffset(recovering); i++) {
+                    expected.add(tokens.token(i).toString());
+                }
+                expected.add("SyntaxError: " + e.getMessage());
+            }
+            for (int size = 1; size <= 64; size++) {
+                List<String> actual = new ArrayList<>();
+                try (TokenStream stream = new TokenStream(new Trickle(source, random), size)) {
+                    Token token;
+                    do {
+                        token = stream.nextToken();
+                        actual.add(token.toString());
+                    } while (token.getType() != TokenType.EOF);
+                } catch (SyntaxError e) {
+                    actual.add("SyntaxError: " + e.getMessage());
+                }
+                int buffer = size;
+                tally.check(actual.equals(expected), () -> buffer + "-character buffer over a " + source.length()
+                    + "-character source: " + firstDifference(expected, actual));
+            }
+        }
+        tally.report();
+    }
+
+    /**
+     * SymbolTable against a stack of maps from name to symbol under random runs of enterScope,
+     * declare and exitScope over a few names, so that names are shadowed several scopes deep and
+     * declared twice in one scope. After every step, lookup of each name must give the symbol the
+     * innermost map has for it, and every symbol must keep its name, value and depth.
+     */
+    static void scopes() {
+        Tally tally = new Tally("scopes");
+        Random random = new Random(7);
+        String[] names = { "a", "b", "count", "x1", "_" };
+        for (int run = 0; run < 200; run++) {
+            SymbolTable table = new SymbolTable();
+            Deque<Map<String, Integer>> model = new ArrayDeque<>();
+            model.push(new HashMap<>());
+            List<String> declared = new ArrayList<>(); // name, value and depth of each symbol
+            for (int step = 0; step < 200; step++) {
+                int op = random.nextInt(10);
+                if (op < 2) {
+                    table.enterScope();
+                    model.push(new HashMap<>());
+                } else if (op < 4 && model.size() > 1) {
+                    table.exitScope();
+                    model.pop();
+                } else {
+                    String name = names[random.nextInt(names.length)];
+                    String value = random.nextBoolean() ? null : String.valueOf(step);
+                    String source = "= " + name + " " + (value == null ? "" : value);
+                    int nameStart = 2;
+                    int valueStart = value == null ? SymbolTable.NONE : nameStart + name.length() + 1;
+                    int s = table.declare(source, nameStart, nameStart + name.length(), SymbolTable.VARIABLE, "int", valueStart,
+                        source.length());
+                    model.peek().put(name, s);
+                    declared.add(name + " = " + value + " at " + (model.size() - 1));
+                }
+                int depth = model.size() - 1;
+                tally.check(table.depth() == depth, () -> "depth " + table.depth() + ", model " + depth);
+                for (String name : names) {
+                    Integer expected = null;
+                    for (Map<String, Integer> scope : model) {
+                        expected = scope.get(name);
+                        if (expected != null) {
+                            break;
+                        }
+                    }
+                    int want = expected == null ? SymbolTable.NONE : expected;
+                    int found = table.lookup(name);
+                    int runNumber = run;
+                    tally.check(found == want, () -> "run " + runNumber + ": lookup(" + name + ") " + found + ", model " + want);
+                }
+            }
+            tally.check(table.size() == declared.size(), () -> table.size() + " symbols, " + declared.size() + " declared");
+            for (int s = 0; s < table.size(); s++) {
+                String actual = table.name(s) + " = " + table.value(s) + " at " + table.depth(s);
+                String expected = declared.get(s);
+                tally.check(actual.equals(expected), () -> "symbol " + actual + ", declared " + expected);
+            }
+        }
+        tally.report();
+    }
+
+    /**
+     * KeywordSuggester's BK-tree search against a linear scan of the edit distance to every keyword,
+     * with the same rules for which words get a suggestion. The words are keywords with one to three
+     * random edits, random lowercase words and a few with digits, read from the middle of a longer text.
+     */
+    static void suggest() {
+        Tally tally = new Tally("suggest");
+        Random random = new Random(8);
+        for (int k = 0; k < 200_000; k++) {
+            String word;
+            if (k % 4 == 3) {
+                word = input(random, "abcdefghijklmnopqrstuvwxyz", 12);
+            } else {
+                StringBuilder edited = new StringBuilder(Keywords.WORDS[random.nextInt(Keywords.WORDS.length)]);
+                for (int e = random.nextInt(k % 4 + 1); e >= 0; e--) {
+                    int at = random.nextInt(edited.length() + 1);
+                    char c = k % 50 == 0 ? '7' : (char) ('a' + random.nextInt(26));
+                    switch (random.nextInt(3)) {
+                        case 0:
+                            edited.insert(at, c);
+                            break;
+                        case 1:
+                            if (at < edited.length()) {
+                                edited.deleteCharAt(at);
+                            }
+                            break;
+                        default:
+                            if (at < edited.length()) {
+                                edited.setCharAt(at, c);
+                            }
+                            break;
+                    }
+                }
+                word = edited.toString();
+            }
+            String text = "x " + word + " y";
+            int tree = KeywordSuggester.suggest(text, 2, 2 + word.length());
+            int scan = suggestByScan(word);
+            tally.check(tree == scan, () -> word + ": BK-tree " + (tree < 0 ? "none" : Keywords.WORDS[tree]) + ", scan "
+                + (scan < 0 ? "none" : Keywords.WORDS[scan]));
+        }
+        tally.report();
+    }
+
+    // KeywordSuggester.suggest by computing the distance to every keyword in turn.
+    private static int suggestByScan(String word) {
+        int tolerance = word.length() < 3 ? 0 : word.length() < 6 ? 1 : 2;
+        if (tolerance == 0 || !word.chars().allMatch(c -> c >= 'a' && c <= 'z') || Arrays.asList(Keywords.WORDS).contains(word)) {
+            return -1;
+        }
+        int best = -1;
+        int bestDistance = tolerance + 1;
+        for (int w = 0; w < Keywords.WORDS.length; w++) {
+            int d = levenshtein(word, Keywords.WORDS[w]);
+            if (d < bestDistance) {
+                best = w;
+                bestDistance = d;
+            }
+        }
+        return best;
+    }
+
+    private static int levenshtein(String a, String b) {
+        int[][] d = new int[a.length() + 1][b.length() + 1];
+        for (int i = 0; i <= a.length(); i++) {
+            for (int j = 0; j <= b.length(); j++) {
+                if (i == 0 || j == 0) {
+                    d[i][j] = i + j;
+                } else {
+                    d[i][j] = Math.min(d[i - 1][j - 1] + (a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1),
+                        Math.min(d[i - 1][j], d[i][j - 1]) + 1);
+                }
+            }
+        }
+        return d[a.length()][b.length()];
+    }
+
+    private static TokenBuffer lexRecovering(LexicalAnalyzer lexer, String source) {
+        try {
+            return lexer.tokenize(source, new TokenBuffer());
+        } catch (SyntaxError e) {
+            throw new IllegalStateException(e); // not thrown while recovering
+        }
+    }
+
+    // Offset of the first error a lexer that is not recovering stops at: an invalid character or an unclosed literal.
+    private static int errorOffset(LexicalAnalyzer recovering) {
+        int first = Integer.MAX_VALUE;
+        for (Diagnostic diagnostic : recovering.getDiagnostics()) {
+            Diagnostic.Kind kind = diagnostic.getKind();
+            if (kind == Diagnostic.Kind.INVALID_CHARACTER || kind == Diagnostic.Kind.UNCLOSED_STRING
+                    || kind == Diagnostic.Kind.UNCLOSED_CHARACTER) {
+                first = Math.min(first, diagnostic.getOffset());
+            }
+        }
+        return first;
+    }
+
+    // A reader that hands out between 1 and 7 characters per read.
+    private static class Trickle extends Reader {
+        private final Reader in;
+        private final Random random;
+
+        Trickle(String text, Random random) {
+            this.in = new StringReader(text);
+            this.random = random;
+        }
+
+        @Override
+        public int read(char[] buffer, int offset, int length) throws IOException {
+            return in.read(buffer, offset, Math.min(length, 1 + random.nextInt(7)));
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    private static List<String> tokens(TokenBuffer tokens) {
+        List<String> out = new ArrayList<>();
+        for (int i = 0; i < tokens.size(); i++) {
+            String symbol = tokens.symbol(i) < 0 ? "-" : tokens.getSymbols().name(tokens.symbol(i));
+            out.add(tokens.type(i) + " " + tokens.start(i) + "+" + tokens.length(i) + " " + tokens.line(i) + ":" + tokens.column(i)
+                + " " + symbol + " " + tokens.text(i));
+        }
+        return out;
+    }
+
+    // Tokens, then diagnostics, of a recovering lex of source, or of bytes if they are given.
+    private static List<String> lex(String source, ByteBuffer bytes) throws SyntaxError {
+        LexicalAnalyzer lexer = new LexicalAnalyzer();
+        lexer.setRecovering(true);
+        TokenBuffer tokens = bytes == null ? lexer.tokenize(source, new TokenBuffer()) : lexer.tokenize(bytes, new TokenBuffer());
+        List<String> out = new ArrayList<>();
+        for (int i = 0; i < tokens.size(); i++) {
+            out.add(tokens.token(i).toString());
+        }
+        for (Diagnostic diagnostic : lexer.getDiagnostics()) {
+            out.add(diagnostic.toString());
+        }
+        return out;
+    }
+
+    private static String firstDifference(List<String> expected, List<String> actual) {
+        int i = 0;
+        while (i < expected.size() && i < actual.size() && expected.get(i).equals(actual.get(i))) {
+            i++;
+        }
+        return "expected " + (i < expected.size() ? expected.get(i) : "nothing") + ", got " + (i < actual.size() ? actual.get(i) : "nothing");
+    }
+}
@@ -0,0 +1,168 @@
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.Random;
+
+/**
+ * Reproducible synthetic inputs for the benchmarks: C-like source made of declarations, functions,
+ * loops, comments and literals, optionally with lexical errors mixed in, and regular expressions of
+ * a given size and nesting depth. The same arguments and seed always give the same text.
+ */
+class CorpusGenerator {
+    private static final String[] TYPES = {"int", "float", "double", "char", "string", "bool"};
+    private static final String[] NAMES = {"count", "total", "index", "value", "ratio", "name", "flag", "sum", "limit", "item"};
+    private static final String[] OPERATORS = {"+", "-", "*", "/", "%"};
+    private static final String[] COMPARISONS = {"<", ">", "==", "!=", "<=", ">="};
+    private static final String[] ERRORS = {"@", "$", "12a", "\"open", "intr"};
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.out.println("usage: CorpusGenerator <bytes> <file> [errors per 1000 lines] [seed]");
+            return;
+        }
+        int bytes = Integer.parseInt(args[0]);
+        int errors = args.length > 2 ? Integer.parseInt(args[2]) : 0;
+        long seed = args.length > 3 ? Long.parseLong(args[3]) : 1;
+        Files.writeString(Paths.get(args[1]), source(seed, bytes, errors));
+    }
+
+    /**
+     * About bytes characters of source, cut after a whole function. errorsPerThousand of every
+     * thousand statement lines carry an invalid character, a bad number, an unclosed string or a
+     * misspelled type.
+     */
+    static String source(long seed, int bytes, int errorsPerThousand) {
+        Random random = new Random(seed);
+        StringBuilder out = new StringBuilder(bytes + 1024);
+        int function = 0;
+        while (out.length() < bytes) {
+            out.append("/* function ").append(function).append(" */\n");
+            out.append(pick(random, TYPES)).append(' ').append("global_").append(function).append(" = ")
+                .append(random.nextInt(1000)).append(";\n");
+            out.append("int f").append(function++).append("(int a, float b) {\n");
+            int statements = 5 + random.nextInt(20);
+            for (int s = 0; s < statements; s++) {
+                statement(random, out, 1, errorsPerThousand);
+            }
+            out.append("    return a;\n}\n\n");
+        }
+        return out.toString();
+    }
+
+    private static void statement(Random random, StringBuilder out, int depth, int errorsPerThousand) {
+        indent(out, depth);
+        boolean error = random.nextInt(1000) < errorsPerThousand;
+        int kind = depth < 3 ? random.nextInt(8) : random.nextInt(5);
+        switch (kind) {
+            case 0:
+            case 1:
+                out.append(error ? "intr" : pick(random, TYPES)).append(' ').append(name(random)).append(" = ");
+                expression(random, out, error);
+                out.append(";\n");
+                break;
+            case 2:
+            case 3:
+                out.append(name(random)).append(" = ");
+                expression(random, out, error);
+                out.append(";\n");
+                break;
+            case 4:
+                out.append("printf(\"").append(name(random)).append(" is %d\\n\", ").append(name(random)).append(");")
+                    .append(random.nextBoolean() ? " // trace\n" : "\n");
+                break;
+            case 5:
+                out.append("if (").append(name(random)).append(' ').append(pick(random, COMPARISONS)).append(' ')
+                    .append(random.nextInt(100)).append(") {\n");
+                block(random, out, depth, errorsPerThousand);
+                break;
+            case 6:
+                out.append("for (int i = 0; i < ").append(random.nextInt(100)).append("; i = i + 1) {\n");
+                block(random, out, depth, errorsPerThousand);
+                break;
+            default:
+                out.append("while (").append(name(random)).append(" > 0) {\n");
+                block(random, out, depth, errorsPerThousand);
+                break;
+        }
+    }
+
+    private static void block(Random random, StringBuilder out, int depth, int errorsPerThousand) {
+        int statements = 1 + random.nextInt(4);
+        for (int s = 0; s < statements; s++) {
+            statement(random, out, depth + 1, errorsPerThousand);
+        }
+        indent(out, depth);
+        out.append("}\n");
+    }
+
+    private static void expression(Random random, StringBuilder out, boolean error) {
+        int terms = 1 + random.nextInt(4);
+        int bad = error ? random.nextInt(terms) : -1;
+        for (int t = 0; t < terms; t++) {
+            if (t > 0) {
+                out.append(' ').append(pick(random, OPERATORS)).append(' ');
+            }
+            if (t == bad) {
+                out.append(pick(random, ERRORS));
+            } else if (random.nextBoolean()) {
+                out.append(name(random));
+            } else if (random.nextBoolean()) {
+                out.append(random.nextInt(10000));
+            } else {
+                out.append(random.nextInt(100)).append('.').append(random.nextInt(1000));
+            }
+        }
+    }
+
+    private static String name(Random random) {
+        String name = pick(random, NAMES);
+        return random.nextInt(3) == 0 ? name + random.nextInt(10) : name;
+    }
+
+    private static void indent(StringBuilder out, int depth) {
+        for (int i = 0; i < depth; i++) {
+            out.append("    ");
+        }
+    }
+
+    private static String pick(Random random, String[] words) {
+        return words[random.nextInt(words.length)];
+    }
+
+    /**
+     * A regular expression with the given number of operands (letters, digits and character classes)
+     * and groups nested depth deep, joined by concatenation, | and the * and + closures.
+     */
+    static String regex(long seed, int operands, int depth) {
+        StringBuilder out = new StringBuilder();
+        regex(new Random(seed), out, Math.max(1, operands), depth);
+        return out.toString();
+    }
+
+    private static void regex(Random random, StringBuilder out, int operands, int depth) {
+        if (depth == 0 || operands < 2) {
+            for (int i = 0; i < operands; i++) {
+                int kind = random.nextInt(4);
+                if (kind == 0) {
+                    out.append("[a-").append((char) ('c' + random.nextInt(20))).append(']');
+                } else if (kind == 1) {
+                    out.append("\\d");
+                } else {
+                    out.append((char) ('a' + random.nextInt(26)));
+                }
+            }
+            return;
+        }
+        int left = 1 + random.nextInt(operands - 1);
+        out.append('(');
+        regex(random, out, left, depth - 1);
+        out.append(random.nextBoolean() ? "|" : ")(");
+        regex(random, out, operands - left, depth - 1);
+        out.append(')');
+        int closure = random.nextInt(3);
+        if (closure == 1) {
+            out.append('*');
+        } else if (closure == 2) {
+            out.append('+');
+        }
+    }
+}
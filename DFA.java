@@ -1,225 +1,384 @@
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.LinkedList;
-import java.util.List;
-import java.util.Map;
-import java.util.Map.Entry;
-import java.util.Queue;
-import java.util.Set;
-
-//import ConsoleTable;
-//import Cell;
-//import Pair;
-
-public class DFA {
-	private Pair pair;
-	private String[] letter;
-	private ConsoleTable table;
-	private Map<Set<Integer>, Integer> map;
-	private Set<Integer> tempset;
-	private Queue<Integer> queue = new LinkedList<>();
-	private List<Character[]> dfa = new ArrayList<>();
-	private List<Character> endState = new ArrayList<>();
-	
-	private int state = 'A';
-
-	public DFA(Pair pair, String[] letter) {
-		this.pair = pair;
-		this.letter = letter;
-		table = new ConsoleTable(letter.length - 1, true);
-		table.appendRow();
-		for (int i = 0; i < letter.length - 1; i++) {
-			table.appendColum(letter[i]);
-		}
-		map = new HashMap<>();
-	}
-
-	public List<Character[]> getDFA() {
-		List<Character[]> redfa = new ArrayList<>();
-		for (Character[] ch : dfa) {
-			if(getSet(ch[0])==null||getSet(ch[0]).isEmpty()) {
-				continue;
-			}
-			else {
-				Character[] newch = new Character[ch.length];
-				for(int i=0;i<ch.length;i++) {
-					if(ch[i]==null)
-						continue;
-					Set<Integer> set = getSet(ch[i]);
-					if(set == null||set.isEmpty())
-						newch[i] = null;
-					else
-						newch[i] = ch[i];
-				}
-				redfa.add(newch);
-			}
-		}
-		return redfa;
-	}
-	
-	public List<Character> getEndState() {
-		return endState;
-	}
-	
-	public String[] getLetter() {
-		return letter;
-	}
-	
-	public void printDFA() {
-		System.out.println();
-		System.out.println("--------DFA--------");
-		System.out.print(table);
-		for (Entry<Set<Integer>, Integer> entry : map.entrySet()) { 
-			if(entry.getValue()==-1)
-				continue;
-			System.out.println((char)entry.getValue().intValue() +" = " + entry.getKey() + (isStart(entry.getKey())?" START ":"") + (isEnd(entry.getKey())?" END ":"") ); 
-		}
-		System.out.println("--------DFA--------");
-	}
-
-	private boolean isStart(Set<Integer> set) {
-		for (Integer integer : set) {
-			if(integer == pair.startNode.getState())
-				return true;
-		}
-		return false;
-	}
-	
-	@SuppressWarnings("removal")
-	private boolean isEnd(Set<Integer> set) {
-		for (Integer integer : set) {
-			if(integer == pair.endNode.getState()) {
-				endState.add(new Character((char)getCharacter(set).intValue()));	
-				return true;
-			}
-		}
-		return false;
-	}
-	
-	public void createDFA() {
-		tempset = new HashSet<>();
-		Set<Integer> start= move(pair.startNode,-1);
-		map.put(start, state);
-		queue.add(state++);
-		while(!queue.isEmpty()) {
-			Character[] dfaline = new Character[letter.length-1];
-			int character = queue.poll();
-			table.appendRow();
-			table.appendColum((char)character);
-			dfaline[0] = (char)character;
-			Set<Integer> set = getSet(character);
-			for(int i=1;i<letter.length-1;i++) {
-				tempset = new HashSet<>();
-				Set<Integer> midset = new HashSet<>();
-				for (Integer integer : set) {
-					Cell cell = getCell(pair.startNode, integer);
-					revisit();
-					if(cell==null) {
-						continue;
-					}
-					else if((char)cell.getEdge() == letter[i].charAt(0)) {
-						midset.add(cell.next.getState());
-					}
-				}
-				for (Integer integer : midset) {
-					Cell cell = getCell(pair.startNode, integer);
-					revisit();
-					move(cell, -1);
-				}
-				Integer c = getCharacter(tempset);
-				if(c==null) {
-					if(tempset.isEmpty()) {
-						map.put(tempset, -1);
-						table.appendColum("null");
-						dfaline[i] = null;
-					}
-					else {
-						queue.add(state);
-						table.appendColum((char)state);
-						dfaline[i] = (char)state;
-						map.put(tempset, state++);
-					}
-				}
-				else {
-					if(c==-1) {
-						table.appendColum("null");
-						dfaline[i] = null;
-					}
-					else {
-						dfaline[i] = (char)c.intValue();
-						table.appendColum((char)c.intValue());
-					}
-				}
-			}
-			dfa.add(dfaline);
-		}
-	}
-
-	private Set<Integer> move(Cell startNode, int i) {
-		connect(startNode, i);
-		revisit();
-		return tempset;
-	}
-
-	private void connect(Cell cell, int i) {
-		if(cell==null||cell.isVisited())
-			return;
-		cell.setVisited();
-		tempset.add(cell.getState());
-		if(cell.getEdge()==-1||cell.getEdge()==i) {
-			connect(cell.next, i);
-			connect(cell.next2, i);
-		}
-		else
-			return;
-	}
-	
-	private Cell getCell(Cell cell, int startstate) {
-		if (cell == null || cell.isVisited())
-			return null;
-		cell.setVisited();
-		if (cell.getState() == startstate)
-			return cell;
-		if (cell.getState() > startstate)
-			return null;
-		Cell temp1 = getCell(cell.next, startstate);
-		Cell temp2 = getCell(cell.next2, startstate);
-		if (temp1 != null)
-			return temp1;
-		if (temp2 != null)
-			return temp2;
-		return null;
-	}
-	
-	private Integer getCharacter(Set<Integer> set) {
-		return map.get(set);
-	}
-	
-	private Set<Integer> getSet(int character) {
-		for (Entry<Set<Integer>, Integer> m :map.entrySet())  {
-			if(m.getValue()==character)
-				return m.getKey();
-		}
-		return null;
-	}
-	
-	private void revisit(Cell cell) {
-		if (cell == null || !cell.isVisited()) {
-			return;
-		}
-		cell.setUnVisited();
-		revisit(cell.next);
-		revisit(cell.next2);
-	}
-	private void revisit() {
-		pair.startNode.setUnVisited();
-		revisit(pair.startNode.next);
-		revisit(pair.startNode.next2);
-	}
-	
-	@Override
-	public String toString() {
-		return tempset.toString();
-	}
-}
\ No newline at end of file
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+//import ConsoleTable;
+//import Cell;
+//import Pair;
+
+public class DFA {
+	public static final int NONE = -1;
+
+	private Pair pair;
+	private String[] letter;
+	private IndexedNfa nfa;
+	private CharClasses classes;
+	private int[] endRule;
+	private Map<BitSet, Integer> map;
+	private List<BitSet> sets = new ArrayList<>();
+	private String[] members;
+	private int columns;
+	private int stateCount = 0;
+	private int[] trans = new int[0];
+	private int[] accept = new int[0];
+
+	// The alphabet is derived from the NFA: one column per character class, see CharClasses.
+	public DFA(Pair pair) {
+		this.pair = pair;
+		map = new HashMap<>();
+	}
+
+	/**
+	 * A DFA for several patterns at once. {@code endRule[s]} is the rule accepted by NFA state
+	 * {@code s} (or NONE); when a DFA state holds several, the smallest rule number wins, so callers
+	 * number their rules from highest to lowest priority.
+	 */
+	public DFA(Pair pair, int[] endRule) {
+		this(pair);
+		this.endRule = endRule;
+	}
+
+	private DFA(CharClasses classes, String[] letter, int stateCount, int[] trans, int[] accept, String[] members) {
+		this.classes = classes;
+		this.letter = letter;
+		this.columns = letter.length - 2;
+		this.stateCount = stateCount;
+		this.trans = trans;
+		this.accept = accept;
+		this.members = members;
+	}
+
+	public List<Character[]> getDFA() {
+		List<Character[]> redfa = new ArrayList<>();
+		for (int s = 0; s < stateCount; s++) {
+			Character[] dfaline = new Character[columns + 1];
+			dfaline[0] = name(s);
+			for (int i = 0; i < columns; i++) {
+				int t = trans[s * columns + i];
+				dfaline[i + 1] = t == NONE ? null : name(t);
+			}
+			redfa.add(dfaline);
+		}
+		return redfa;
+	}
+
+	public List<Character> getEndState() {
+		List<Character> endState = new ArrayList<>();
+		for (int s = 0; s < stateCount; s++) {
+			if (accept[s] != NONE)
+				endState.add(name(s));
+		}
+		return endState;
+	}
+
+	public String[] getLetter() {
+		return letter;
+	}
+
+	public CharClasses getClasses() {
+		return classes;
+	}
+
+	public int getStateCount() {
+		return stateCount;
+	}
+
+	// Target of state s on character class `column`, or NONE.
+	public int getTransition(int s, int column) {
+		return trans[s * columns + column];
+	}
+
+	public int getAccept(int s) {
+		return accept[s];
+	}
+
+	public void printDFA() {
+		ConsoleTable table = new ConsoleTable(columns + 1, true);
+		table.appendRow();
+		for (int i = 0; i <= columns; i++) {
+			table.appendColum(letter[i]);
+		}
+		for (Character[] dfaline : getDFA()) {
+			table.appendRow();
+			for (Character c : dfaline) {
+				table.appendColum(c == null ? "null" : c);
+			}
+		}
+		System.out.println();
+		System.out.println("--------DFA--------");
+		System.out.print(table);
+		for (int s = 0; s < stateCount; s++) {
+			System.out.println(name(s) +" = " + describe(s) + (s == 0?" START ":"") + (accept[s] != NONE?" END ":"") );
+		}
+		System.out.println("--------DFA--------");
+	}
+
+	public void createDFA() {
+		nfa = new IndexedNfa(pair);
+		classes = new CharClasses(nfa);
+		columns = classes.count();
+		letter = new String[columns + 2];
+		letter[0] = "";
+		for (int i = 0; i < columns; i++) {
+			letter[i + 1] = classes.label(i);
+		}
+		letter[columns + 1] = "EPSILON";
+		intern(nfa.closure(nfa.getStart()));
+		for (int current = 0; current < stateCount; current++) {
+			BitSet[] targets = new BitSet[columns];
+			nfa.moves(sets.get(current), classes, targets);
+			for(int i=0;i<columns;i++) {
+				int target = targets[i] == null ? NONE : intern(targets[i]);
+				trans[current * columns + i] = target;
+			}
+		}
+	}
+
+	/**
+	 * Hopcroft's partition refinement. Returns a new DFA with equivalent states merged and
+	 * states that cannot reach an end state dropped; this DFA is left untouched.
+	 */
+	public DFA minimize() {
+		int dead = stateCount;
+		int n = stateCount + 1;
+		int k = columns;
+
+		// inverse transitions in compressed rows: sources of (c, t) are src[head[c*n+t] .. head[c*n+t+1])
+		int[] head = new int[k * n + 1];
+		for (int s = 0; s < n; s++) {
+			for (int c = 0; c < k; c++) {
+				head[c * n + target(s, c) + 1]++;
+			}
+		}
+		for (int i = 0; i < k * n; i++) {
+			head[i + 1] += head[i];
+		}
+		int[] src = new int[k * n];
+		int[] fill = Arrays.copyOf(head, k * n);
+		for (int s = 0; s < n; s++) {
+			for (int c = 0; c < k; c++) {
+				src[fill[c * n + target(s, c)]++] = s;
+			}
+		}
+
+		// refinable partition, initially one block per accept value
+		int[] elems = new int[n];
+		int[] loc = new int[n];
+		int[] block = new int[n];
+		int[] first = new int[n];
+		int[] end = new int[n];
+		int[] marked = new int[n];
+		Map<Integer, Integer> initial = new HashMap<>();
+		int blocks = 0;
+		for (int s = 0; s < n; s++) {
+			int key = s == dead ? NONE : accept[s];
+			Integer b = initial.get(key);
+			if (b == null) {
+				b = blocks++;
+				initial.put(key, b);
+			}
+			block[s] = b;
+			end[b]++;
+		}
+		for (int b = 1; b < blocks; b++) {
+			first[b] = end[b - 1];
+			end[b] += first[b];
+		}
+		int[] pos = Arrays.copyOf(first, blocks);
+		for (int s = 0; s < n; s++) {
+			elems[pos[block[s]]] = s;
+			loc[s] = pos[block[s]]++;
+		}
+
+		int largest = 0;
+		for (int b = 1; b < blocks; b++) {
+			if (end[b] - first[b] > end[largest] - first[largest])
+				largest = b;
+		}
+		BitSet pending = new BitSet();
+		int[] work = new int[Math.max(16, blocks * k)];
+		int top = 0;
+		for (int b = 0; b < blocks; b++) {
+			if (b == largest)
+				continue;
+			for (int c = 0; c < k; c++) {
+				work = push(work, top++, b * k + c);
+				pending.set(b * k + c);
+			}
+		}
+
+		int[] splitter = new int[n];
+		int[] touched = new int[n];
+		while (top > 0) {
+			int item = work[--top];
+			pending.clear(item);
+			int b = item / k;
+			int c = item % k;
+
+			int size = 0;
+			for (int i = first[b]; i < end[b]; i++) {
+				int t = elems[i];
+				for (int j = head[c * n + t]; j < head[c * n + t + 1]; j++) {
+					splitter[size++] = src[j];
+				}
+			}
+
+			int touchedCount = 0;
+			for (int i = 0; i < size; i++) {
+				int s = splitter[i];
+				int y = block[s];
+				int m = first[y] + marked[y];
+				if (loc[s] < m)
+					continue;
+				if (marked[y] == 0)
+					touched[touchedCount++] = y;
+				int other = elems[m];
+				elems[loc[s]] = other;
+				loc[other] = loc[s];
+				elems[m] = s;
+				loc[s] = m;
+				marked[y]++;
+			}
+
+			for (int i = 0; i < touchedCount; i++) {
+				int y = touched[i];
+				int m = marked[y];
+				marked[y] = 0;
+				if (m == end[y] - first[y])
+					continue;
+				int z = blocks++;
+				first[z] = first[y];
+				end[z] = first[y] + m;
+				first[y] = end[z];
+				for (int j = first[z]; j < end[z]; j++) {
+					block[elems[j]] = z;
+				}
+				int smaller = end[z] - first[z] <= end[y] - first[y] ? z : y;
+				for (int a = 0; a < k; a++) {
+					if (pending.get(y * k + a) || smaller == z) {
+						work = push(work, top++, z * k + a);
+						pending.set(z * k + a);
+					}
+					else {
+						work = push(work, top++, y * k + a);
+						pending.set(y * k + a);
+					}
+				}
+			}
+		}
+
+		// renumber blocks in breadth-first order from the start state, skipping the dead block
+		int deadBlock = block[dead];
+		int[] number = new int[blocks];
+		Arrays.fill(number, NONE);
+		int[] order = new int[blocks];
+		int count = 0;
+		number[block[0]] = count;
+		order[count++] = block[0];
+		for (int i = 0; i < count; i++) {
+			int rep = elems[first[order[i]]];
+			for (int c = 0; c < k; c++) {
+				int t = block[target(rep, c)];
+				if (t != deadBlock && number[t] == NONE) {
+					number[t] = count;
+					order[count++] = t;
+				}
+			}
+		}
+
+		int[] newTrans = new int[count * k];
+		int[] newAccept = new int[count];
+		String[] newMembers = new String[count];
+		for (int i = 0; i < count; i++) {
+			int b = order[i];
+			int rep = elems[first[b]];
+			for (int c = 0; c < k; c++) {
+				int t = block[target(rep, c)];
+				newTrans[i * k + c] = t == deadBlock ? NONE : number[t];
+			}
+			newAccept[i] = rep == dead ? NONE : accept[rep];
+			int[] group = Arrays.copyOfRange(elems, first[b], end[b]);
+			Arrays.sort(group);
+			StringBuilder buf = new StringBuilder("{");
+			for (int s : group) {
+				if (s == dead)
+					continue;
+				if (buf.length() > 1)
+					buf.append(", ");
+				buf.append(name(s));
+			}
+			newMembers[i] = buf.append('}').toString();
+		}
+
+		return new DFA(classes, letter, count, newTrans, newAccept, newMembers);
+	}
+
+	private int target(int s, int c) {
+		if (s == stateCount)
+			return stateCount;
+		int t = trans[s * columns + c];
+		return t == NONE ? stateCount : t;
+	}
+
+	private static int[] push(int[] work, int top, int item) {
+		if (top == work.length)
+			work = Arrays.copyOf(work, work.length * 2);
+		work[top] = item;
+		return work;
+	}
+
+	private int intern(BitSet set) {
+		Integer c = map.get(set);
+		if (c == null) {
+			c = stateCount++;
+			map.put(set, c);
+			sets.add(set);
+			if (stateCount * columns > trans.length || stateCount > accept.length) {
+				int capacity = Math.max(16, stateCount * 2);
+				trans = Arrays.copyOf(trans, capacity * columns);
+				accept = Arrays.copyOf(accept, capacity);
+			}
+			Arrays.fill(trans, c * columns, stateCount * columns, NONE);
+			accept[c] = acceptOf(set);
+		}
+		return c;
+	}
+
+	private int acceptOf(BitSet set) {
+		if (endRule == null) {
+			return set.get(nfa.getEnd()) ? 0 : NONE;
+		}
+		int rule = NONE;
+		for (int s = set.nextSetBit(0); s >= 0; s = set.nextSetBit(s + 1)) {
+			if (s < endRule.length && endRule[s] != NONE && (rule == NONE || endRule[s] < rule))
+				rule = endRule[s];
+		}
+		return rule;
+	}
+
+	private char name(int s) {
+		return (char)('A' + s);
+	}
+
+	private String describe(int s) {
+		return members != null ? members[s] : format(sets.get(s));
+	}
+
+	private String format(BitSet set) {
+		StringBuilder buf = new StringBuilder("[");
+		for (int s = set.nextSetBit(0); s >= 0; s = set.nextSetBit(s + 1)) {
+			if (buf.length() > 1)
+				buf.append(", ");
+			buf.append(s);
+		}
+		return buf.append(']').toString();
+	}
+
+	@Override
+	public String toString() {
+		return members != null ? Arrays.toString(members) : sets.toString();
+	}
+}
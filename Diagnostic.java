@@ -0,0 +1,40 @@
+class Diagnostic {
+    enum Kind {
+        INVALID_CHARACTER,
+        INVALID_NUMBER,
+        UNCLOSED_STRING,
+        UNCLOSED_CHARACTER,
+        UNCLOSED_COMMENT,
+        EXCESS_OPERATOR,
+        MISSING_SEMICOLON,
+        MISSPELLED_KEYWORD
+    }
+
+    private Kind kind;
+    private String message;
+    private int offset;
+    private int length;
+    private int line;
+    private int column;
+
+    public Diagnostic(Kind kind, String message, int offset, int length, int line, int column) {
+        this.kind = kind;
+        this.message = message;
+        this.offset = offset;
+        this.length = length;
+        this.line = line;
+        this.column = column;
+    }
+
+    public Kind getKind() { return kind; }
+    public String getMessage() { return message; }
+    public int getOffset() { return offset; }
+    public int getLength() { return length; }
+    public int getLine() { return line; }
+    public int getColumn() { return column; }
+
+    @Override
+    public String toString() {
+        return String.format("%s at line %d, column %d", message, line, column);
+    }
+}
@@ -0,0 +1,203 @@
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+//import simple.Cell;
+//import simple.Pair;
+
+/**
+ * Flat, array-backed view of a Thompson NFA. States are addressed by
+ * {@link Cell#getState()} and each epsilon closure is computed at most once,
+ * so subset construction never has to walk the cell graph again. Closures are
+ * published through an atomic array, so threads can share one instance; two
+ * that race on the same closure both compute it, and get equal sets.
+ */
+public class IndexedNfa {
+	public static final int NONE = -1;
+
+	private int size;
+	private int start;
+	private int end;
+	private int[] edge;
+	private int[] next;
+	private int[] next2;
+	private int[] charClass;
+	private BitSet[] charSets;
+	private AtomicReferenceArray<BitSet> closure;
+
+	public IndexedNfa(Pair pair) {
+		start = pair.startNode.getState();
+		end = pair.endNode == null ? NONE : pair.endNode.getState();
+		edge = new int[16];
+		next = new int[16];
+		next2 = new int[16];
+		charClass = new int[16];
+		index(pair.startNode);
+		closure = new AtomicReferenceArray<>(size);
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public int getStart() {
+		return start;
+	}
+
+	public int getEnd() {
+		return end;
+	}
+
+	public int getEdge(int s) {
+		return edge[s];
+	}
+
+	public int getNext(int s) {
+		return next[s];
+	}
+
+	public int getNext2(int s) {
+		return next2[s];
+	}
+
+	// Id of the character set on a Cell.CCL edge.
+	public int getCharClass(int s) {
+		return charClass[s];
+	}
+
+	public BitSet getCharSet(int id) {
+		return charSets[id];
+	}
+
+	public int charSetCount() {
+		return charSets.length;
+	}
+
+	/** Epsilon closure of a single state, including the state itself. Must not be modified. */
+	public BitSet closure(int s) {
+		BitSet set = closure.get(s);
+		if (set == null) {
+			set = computeClosure(s);
+			closure.set(s, set);
+		}
+		return set;
+	}
+
+	/** Union of the epsilon closures of every state reached from {@code set} on {@code c}. */
+	public BitSet move(BitSet set, int c) {
+		BitSet target = new BitSet(size);
+		for (int s = set.nextSetBit(0); s >= 0; s = set.nextSetBit(s + 1)) {
+			if (matches(s, c) && next[s] != NONE) {
+				target.or(closure(next[s]));
+			}
+		}
+		return target;
+	}
+
+	/**
+	 * Computes the moves on every character class at once: {@code targets[k]} receives the
+	 * closure reached on the characters of class {@code k}.
+	 */
+	public void moves(BitSet set, CharClasses classes, BitSet[] targets) {
+		for (int s = set.nextSetBit(0); s >= 0; s = set.nextSetBit(s + 1)) {
+			if (next[s] == NONE) {
+				continue;
+			}
+			if (edge[s] >= 0) {
+				addMove(targets, classes.classOf((char) edge[s]), next[s]);
+			}
+			else if (edge[s] == Cell.CCL) {
+				for (int k : classes.classesOf(charClass[s])) {
+					addMove(targets, k, next[s]);
+				}
+			}
+		}
+	}
+
+	// Whether the edge leaving s is taken on character c.
+	public boolean matches(int s, int c) {
+		return edge[s] == c || edge[s] == Cell.CCL && charSets[charClass[s]].get(c);
+	}
+
+	private void addMove(BitSet[] targets, int k, int s) {
+		if (targets[k] == null) {
+			targets[k] = new BitSet(size);
+		}
+		targets[k].or(closure(s));
+	}
+
+	private void index(Cell startNode) {
+		NfaManager manager = startNode.getManager();
+		charSets = new BitSet[manager.charSetCount()];
+		for (int id = 0; id < charSets.length; id++) {
+			charSets[id] = manager.getCharSet(id);
+		}
+		BitSet seen = new BitSet();
+		int[] stack = new int[16];
+		int top = 0;
+		stack[top++] = startNode.getIndex();
+		seen.set(startNode.getIndex());
+		while (top > 0) {
+			int cell = stack[--top];
+			int s = manager.getState(cell);
+			int n = manager.getNext(cell);
+			int n2 = manager.getNext2(cell);
+			ensureCapacity(s + 1);
+			edge[s] = manager.getEdge(cell);
+			charClass[s] = manager.getCharClass(cell);
+			next[s] = n == NfaManager.NONE ? NONE : manager.getState(n);
+			next2[s] = n2 == NfaManager.NONE ? NONE : manager.getState(n2);
+			if (top + 2 > stack.length) {
+				stack = Arrays.copyOf(stack, stack.length * 2);
+			}
+			if (n != NfaManager.NONE && !seen.get(n)) {
+				seen.set(n);
+				stack[top++] = n;
+			}
+			if (n2 != NfaManager.NONE && !seen.get(n2)) {
+				seen.set(n2);
+				stack[top++] = n2;
+			}
+		}
+	}
+
+	private void ensureCapacity(int n) {
+		if (n > size) {
+			if (n > edge.length) {
+				int capacity = Math.max(n, edge.length * 2);
+				edge = Arrays.copyOf(edge, capacity);
+				next = Arrays.copyOf(next, capacity);
+				next2 = Arrays.copyOf(next2, capacity);
+				charClass = Arrays.copyOf(charClass, capacity);
+			}
+			for (int s = size; s < n; s++) {
+				edge[s] = Cell.EMPTY;
+				next[s] = next2[s] = charClass[s] = NONE;
+			}
+			size = n;
+		}
+	}
+
+	private BitSet computeClosure(int s) {
+		BitSet set = new BitSet(size);
+		int[] stack = new int[size];
+		int top = 0;
+		set.set(s);
+		stack[top++] = s;
+		while (top > 0) {
+			int cur = stack[--top];
+			if (edge[cur] != Cell.EPSILON) {
+				continue;
+			}
+			if (next[cur] != NONE && !set.get(next[cur])) {
+				set.set(next[cur]);
+				stack[top++] = next[cur];
+			}
+			if (next2[cur] != NONE && !set.get(next2[cur])) {
+				set.set(next2[cur]);
+				stack[top++] = next2[cur];
+			}
+		}
+		return set;
+	}
+}
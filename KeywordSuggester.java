@@ -0,0 +1,104 @@
+import java.util.Arrays;
+
+/**
+ * Suggests the keyword a misspelled word was meant to be. The keywords are kept in a BK-tree under
+ * Levenshtein distance, built when the class loads: each child hangs off its parent by its distance
+ * to it, so by the triangle inequality a search within distance t of a word only enters the children
+ * whose edge is within t of the word's own distance to the node. Words longer than any keyword plus
+ * the tolerance are rejected before the search, which bounds a query by a fixed amount of work.
+ */
+final class KeywordSuggester {
+    private static final int ROOT = 0;
+    private static final int MAX_LENGTH;
+    private static final int[][] CHILD; // CHILD[w][d]: the child of keyword w at distance d, or -1
+
+    static {
+        int maxLength = 0;
+        for (String word : Keywords.WORDS) {
+            maxLength = Math.max(maxLength, word.length());
+        }
+        MAX_LENGTH = maxLength;
+        CHILD = new int[Keywords.WORDS.length][maxLength + 1];
+        for (int[] children : CHILD) {
+            Arrays.fill(children, -1);
+        }
+        for (int w = 1; w < Keywords.WORDS.length; w++) {
+            String word = Keywords.WORDS[w];
+            int node = ROOT;
+            while (true) {
+                int d = distance(word, 0, word.length(), Keywords.WORDS[node], new int[2][maxLength + 1]);
+                if (CHILD[node][d] < 0) {
+                    CHILD[node][d] = w;
+                    break;
+                }
+                node = CHILD[node][d];
+            }
+        }
+    }
+
+    private KeywordSuggester() {
+    }
+
+    /**
+     * Index in Keywords.WORDS of the closest keyword to s[start, end), or -1 if the word is a keyword
+     * or plausibly a name of its own: shorter than three letters, spelled with digits or underscores,
+     * or further from every keyword than one edit (two for words of six letters or more). Ties go
+     * to the keyword listed first.
+     */
+    static int suggest(CharSequence s, int start, int end) {
+        int length = end - start;
+        int tolerance = length < 3 ? 0 : length < 6 ? 1 : 2;
+        if (tolerance == 0 || length > MAX_LENGTH + tolerance || Keywords.lookup(s, start, end) >= 0) {
+            return -1;
+        }
+        for (int i = start; i < end; i++) {
+            char c = s.charAt(i);
+            if (c < 'a' || c > 'z') {
+                return -1;
+            }
+        }
+        int best = -1;
+        int bestDistance = tolerance + 1;
+        int[] stack = new int[Keywords.WORDS.length];
+        int[][] rows = new int[2][MAX_LENGTH + 1];
+        int top = 0;
+        stack[top++] = ROOT;
+        while (top > 0) {
+            int node = stack[--top];
+            int d = distance(s, start, end, Keywords.WORDS[node], rows);
+            if (d < bestDistance || d == bestDistance && node < best) {
+                best = node;
+                bestDistance = d;
+            }
+            int[] children = CHILD[node];
+            for (int e = Math.max(1, d - tolerance); e <= Math.min(MAX_LENGTH, d + tolerance); e++) {
+                if (children[e] >= 0) {
+                    stack[top++] = children[e];
+                }
+            }
+        }
+        return best;
+    }
+
+    // Levenshtein distance between s[start, end) and word, by the two-row dynamic program in rows.
+    private static int distance(CharSequence s, int start, int end, String word, int[][] rows) {
+        int n = word.length();
+        int[] previous = rows[0];
+        int[] current = rows[1];
+        for (int j = 0; j <= n; j++) {
+            previous[j] = j;
+        }
+        for (int i = start; i < end; i++) {
+            current[0] = i - start + 1;
+            char c = s.charAt(i);
+            for (int j = 1; j <= n; j++) {
+                int substitute = previous[j - 1] + (c == word.charAt(j - 1) ? 0 : 1);
+                current[j] = Math.min(substitute, Math.min(previous[j], current[j - 1]) + 1);
+            }
+            int[] row = previous;
+            previous = current;
+            current = row;
+        }
+        return previous[n];
+    }
+}
@@ -0,0 +1,88 @@
+import java.util.Arrays;
+
+/**
+ * Keyword recognizer over a char range, using a perfect hash generated when the class loads: the
+ * first character, last character and length of a word pick its slot, and a multiplier is searched
+ * for until every keyword lands in a slot of its own. A lookup is one multiply and at most one
+ * comparison against the keyword in that slot, with no String built for the candidate.
+ */
+final class Keywords {
+    static final String[] WORDS = {
+        "int", "if", "else", "while", "for", "return", "true", "false", "string", "char", "float",
+        "double", "bool", "const", "switch", "case", "break", "continue", "default", "void", "printf"
+    };
+
+    private static final int MULTIPLIER;
+    private static final int SHIFT;
+    private static final int[] SLOT;
+
+    static {
+        int bits = 32 - Integer.numberOfLeadingZeros(WORDS.length - 1);
+        int multiplier;
+        while ((multiplier = search(bits)) == 0) {
+            bits++;
+        }
+        MULTIPLIER = multiplier;
+        SHIFT = 32 - bits;
+        SLOT = new int[1 << bits];
+        Arrays.fill(SLOT, -1);
+        for (int w = 0; w < WORDS.length; w++) {
+            SLOT[slot(WORDS[w], 0, WORDS[w].length(), MULTIPLIER, SHIFT)] = w;
+        }
+    }
+
+    private Keywords() {
+    }
+
+    // Where the search starts: the multiplier it found for WORDS, so loading the class takes one attempt.
+    private static final int FIRST_MULTIPLIER = 0x5B4222E9;
+
+    // An odd multiplier that sends every keyword to its own slot in a table of 2^bits, or 0 if none is found.
+    private static int search(int bits) {
+        boolean[] used = new boolean[1 << bits];
+        int multiplier = FIRST_MULTIPLIER;
+        for (int attempt = 0; attempt < 10000; attempt++, multiplier += 0x6A09E668) {
+            Arrays.fill(used, false);
+            int w = 0;
+            while (w < WORDS.length) {
+                int s = slot(WORDS[w], 0, WORDS[w].length(), multiplier | 1, 32 - bits);
+                if (used[s]) {
+                    break;
+                }
+                used[s] = true;
+                w++;
+            }
+            if (w == WORDS.length) {
+                return multiplier | 1;
+            }
+        }
+        return 0;
+    }
+
+    private static int slot(CharSequence s, int start, int end, int multiplier, int shift) {
+        int key = s.charAt(start) | s.charAt(end - 1) << 8 | (end - start) << 16;
+        return (key * multiplier) >>> shift;
+    }
+
+    // Index in WORDS of the keyword spelled by s[start, end), or -1.
+    static int lookup(CharSequence s, int start, int end) {
+        if (end <= start) {
+            return -1;
+        }
+        int w = SLOT[slot(s, start, end, MULTIPLIER, SHIFT)];
+        if (w < 0 || WORDS[w].length() != end - start) {
+            return -1;
+        }
+        String word = WORDS[w];
+        for (int i = 0; i < word.length(); i++) {
+            if (s.charAt(start + i) != word.charAt(i)) {
+                return -1;
+            }
+        }
+        return w;
+    }
+
+    static boolean isKeyword(CharSequence s) {
+        return lookup(s, 0, s.length()) >= 0;
+    }
+}
@@ -0,0 +1,198 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A DFA that is determinized while it matches. A state (a set of NFA states) and each of its
+ * transitions are only computed when the input first reaches them, then cached, and the cache holds
+ * at most maxStates states. When it is full it is flushed and filled again from the current state,
+ * as RE2 does. If flushes come so often that the cache is no longer saving work (fewer than
+ * FLUSH_RATIO characters matched per cached state), the rest of that match simulates the NFA
+ * directly. Either way memory stays bounded by maxStates, however many states the full DFA would
+ * have. Matching updates the cache, so an instance must not be shared between threads.
+ */
+public class LazyDFA implements MatchEngine {
+	public static final int NONE = -1;
+	private static final int UNKNOWN = -2; // transition not computed yet
+	private static final int FLUSH_RATIO = 10;
+
+	private final IndexedNfa nfa;
+	private final CharClasses classes;
+	private final int[] endRule;
+	private final int columns;
+	private final int maxStates;
+
+	private final Map<BitSet, Integer> ids = new HashMap<>();
+	private final List<BitSet> sets = new ArrayList<>();
+	private int[] trans;
+	private int[] accept;
+	private int start = NONE;
+	private long sinceFlush; // characters stepped through the cache since the last flush
+	private long flushes;
+	private long fallbacks;
+
+	public LazyDFA(String re, int maxStates) {
+		this(new NFA(re).build(new NfaManager()), null, maxStates);
+	}
+
+	// endRule as for DFA(Pair, int[]): the rule accepted by each NFA state, or null for a single pattern.
+	public LazyDFA(Pair pair, int[] endRule, int maxStates) {
+		if (maxStates < 2) {
+			throw new IllegalArgumentException("maxStates must be at least 2: " + maxStates);
+		}
+		this.nfa = new IndexedNfa(pair);
+		this.classes = new CharClasses(nfa);
+		this.endRule = endRule;
+		this.columns = classes.count();
+		this.maxStates = maxStates;
+		this.trans = new int[Math.min(maxStates, 16) * columns];
+		this.accept = new int[Math.min(maxStates, 16)];
+	}
+
+	@Override
+	public long match(CharSequence src, int pos, int end) {
+		int state = start();
+		int lastRule = NONE;
+		int lastEnd = pos;
+		for (int i = pos; i < end; i++) {
+			char c = src.charAt(i);
+			int column = classes.classOf(c);
+			if (column < 0)
+				break;
+			int next = trans[state * columns + column];
+			if (next == UNKNOWN) {
+				BitSet target = nfa.move(sets.get(state), c);
+				if (target.isEmpty()) {
+					next = NONE;
+					trans[state * columns + column] = NONE;
+				}
+				else if (ids.containsKey(target) || sets.size() < maxStates) {
+					next = intern(target);
+					trans[state * columns + column] = next;
+				}
+				else if (flush()) {
+					next = intern(target); // state went with the flush, so there is no edge to keep
+				}
+				else {
+					return simulate(target, src, i + 1, end, lastRule, lastEnd);
+				}
+			}
+			if (next == NONE)
+				break;
+			state = next;
+			sinceFlush++;
+			if (accept[state] != NONE) {
+				lastRule = accept[state];
+				lastEnd = i + 1;
+			}
+		}
+		return lastRule == NONE ? NONE : ((long) lastRule << 32) | lastEnd;
+	}
+
+	@Override
+	public boolean matches(CharSequence src) {
+		if (src.length() == 0)
+			return accept[start()] != NONE;
+		long match = match(src, 0, src.length());
+		return match != NONE && ScannerTable.end(match) == src.length();
+	}
+
+	// States currently cached.
+	public int getStateCount() {
+		return sets.size();
+	}
+
+	public int getMaxStates() {
+		return maxStates;
+	}
+
+	public long getFlushes() {
+		return flushes;
+	}
+
+	// Matches that gave up on the cache and finished by NFA simulation.
+	public long getFallbacks() {
+		return fallbacks;
+	}
+
+	// The start state, which a flush also removes; making room for it always clears the cache.
+	private int start() {
+		if (start == NONE) {
+			BitSet set = nfa.closure(nfa.getStart());
+			if (!ids.containsKey(set) && sets.size() == maxStates)
+				clear();
+			start = intern(set);
+		}
+		return start;
+	}
+
+	/**
+	 * Empties the cache, unless it was last flushed so recently that caching is not paying off; then
+	 * it is left alone and false is returned.
+	 */
+	private boolean flush() {
+		if (sinceFlush < (long) FLUSH_RATIO * maxStates) {
+			fallbacks++;
+			return false;
+		}
+		clear();
+		flushes++;
+		return true;
+	}
+
+	private void clear() {
+		ids.clear();
+		sets.clear();
+		start = NONE;
+		sinceFlush = 0;
+	}
+
+	// Continues a match from the NFA states in set at src[i], without the cache.
+	private long simulate(BitSet set, CharSequence src, int i, int end, int lastRule, int lastEnd) {
+		for (;;) {
+			int rule = acceptOf(set);
+			if (rule != NONE) {
+				lastRule = rule;
+				lastEnd = i;
+			}
+			if (i == end)
+				break;
+			set = nfa.move(set, src.charAt(i++));
+			if (set.isEmpty())
+				break;
+		}
+		return lastRule == NONE ? NONE : ((long) lastRule << 32) | lastEnd;
+	}
+
+	private int intern(BitSet set) {
+		Integer id = ids.get(set);
+		if (id != null)
+			return id;
+		int s = sets.size();
+		ids.put(set, s);
+		sets.add(set);
+		if (s == accept.length) {
+			int capacity = Math.min(maxStates, s * 2);
+			trans = Arrays.copyOf(trans, capacity * columns);
+			accept = Arrays.copyOf(accept, capacity);
+		}
+		Arrays.fill(trans, s * columns, (s + 1) * columns, UNKNOWN);
+		accept[s] = acceptOf(set);
+		return s;
+	}
+
+	// The rule accepted in set: for several rules the smallest number, as in DFA.
+	private int acceptOf(BitSet set) {
+		if (endRule == null)
+			return set.get(nfa.getEnd()) ? 0 : NONE;
+		int rule = NONE;
+		for (int s = set.nextSetBit(0); s >= 0; s = set.nextSetBit(s + 1)) {
+			if (s < endRule.length && endRule[s] != NONE && (rule == NONE || endRule[s] < rule))
+				rule = endRule[s];
+		}
+		return rule;
+	}
+}
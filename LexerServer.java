@@ -0,0 +1,193 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.*;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps the lexer running as a local daemon, so build tools get a warmed-up JIT instead of a cold
+ * JVM per file. It answers HTTP POSTs on the loopback interface with the source as the body:
+ * /tokens, /symbols and /diagnostics reply with the text App prints for each, and GET /stats counts
+ * the requests served. Connection threads only queue requests. A fixed set of workers, each with
+ * its own LexicalAnalyzer and TokenBuffer, takes them off the queue one at a time: requests share
+ * the warmed-up lexers and reused buffers, but each one is lexed on its own.
+ */
+class LexerServer {
+    static final int DEFAULT_PORT = 7878;
+    private static final Set<String> KINDS = Set.of("/tokens", "/symbols", "/diagnostics");
+    private static final int MAX_REQUEST = 64 << 20;
+
+    private final HttpServer http;
+    private final ExecutorService connections = connectionExecutor();
+    private final BlockingQueue<Job> queue = new LinkedBlockingQueue<>();
+    private final List<Thread> workers = new ArrayList<>();
+    private final AtomicLong requests = new AtomicLong();
+
+    private static class Job {
+        final String kind;
+        final String source;
+        final CompletableFuture<byte[]> result = new CompletableFuture<>();
+
+        Job(String kind, String source) {
+            this.kind = kind;
+            this.source = source;
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        LexerServer server = new LexerServer(port, Runtime.getRuntime().availableProcessors());
+        warmUp();
+        server.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(server::stop));
+        System.out.println("listening on http://127.0.0.1:" + server.getPort() + "/");
+    }
+
+    LexerServer(int port, int threads) throws IOException {
+        // Without TCP_NODELAY, headers and body go out in two packets and each reply waits for a delayed ACK.
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+        http = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        http.createContext("/", this::handle);
+        http.setExecutor(connections);
+        for (int i = 0; i < threads; i++) {
+            Thread worker = new Thread(this::work, "lexer-worker-" + i);
+            worker.setDaemon(true);
+            workers.add(worker);
+        }
+    }
+
+    void start() {
+        for (Thread worker : workers) {
+            worker.start();
+        }
+        http.start();
+    }
+
+    void stop() {
+        http.stop(0);
+        for (Thread worker : workers) {
+            worker.interrupt();
+        }
+        connections.shutdown();
+    }
+
+    int getPort() {
+        return http.getAddress().getPort();
+    }
+
+    // A virtual thread per connection where the JVM has them (Java 21 on), otherwise a cached pool.
+    private static ExecutorService connectionExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool();
+        }
+    }
+
+    // Runs every kind of request over a generated source until the JIT has compiled the hot paths.
+    private static void warmUp() {
+        LexicalAnalyzer lexer = new LexicalAnalyzer();
+        lexer.setRecovering(true);
+        TokenBuffer tokens = new TokenBuffer();
+        String source = CorpusGenerator.source(1, 256 << 10, 10);
+        for (int i = 0; i < 10; i++) {
+            for (String kind : KINDS) {
+                run(lexer, tokens, kind, source);
+            }
+        }
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            String path = exchange.getRequestURI().getPath();
+            String method = exchange.getRequestMethod();
+            if (path.equals("/stats") && method.equals("GET")) {
+                respond(exchange, 200, String.format("requests: %d, workers: %d%n", requests.get(), workers.size())
+                    .getBytes(StandardCharsets.UTF_8));
+                return;
+            }
+            if (!KINDS.contains(path)) {
+                respond(exchange, 404, ("unknown path " + path + "\n").getBytes(StandardCharsets.UTF_8));
+                return;
+            }
+            if (!method.equals("POST")) {
+                respond(exchange, 405, "POST the source to lex\n".getBytes(StandardCharsets.UTF_8));
+                return;
+            }
+            byte[] body = exchange.getRequestBody().readNBytes(MAX_REQUEST + 1);
+            if (body.length > MAX_REQUEST) {
+                respond(exchange, 413, ("source larger than " + (MAX_REQUEST >> 20) + " MB\n").getBytes(StandardCharsets.UTF_8));
+                return;
+            }
+            Job job = new Job(path, new String(body, StandardCharsets.UTF_8));
+            requests.incrementAndGet();
+            queue.add(job);
+            try {
+                respond(exchange, 200, job.result.get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                respond(exchange, 503, "server stopping\n".getBytes(StandardCharsets.UTF_8));
+            } catch (ExecutionException e) {
+                respond(exchange, 500, (e.getCause() + "\n").getBytes(StandardCharsets.UTF_8));
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static void respond(HttpExchange exchange, int status, byte[] body) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(status, body.length);
+        exchange.getResponseBody().write(body);
+    }
+
+    private void work() {
+        LexicalAnalyzer lexer = new LexicalAnalyzer();
+        lexer.setRecovering(true);
+        TokenBuffer tokens = new TokenBuffer();
+        try {
+            while (true) {
+                Job job = queue.take();
+                try {
+                    job.result.complete(run(lexer, tokens, job.kind, job.source));
+                } catch (RuntimeException e) {
+                    job.result.completeExceptionally(e);
+                }
+            }
+        } catch (InterruptedException e) {
+            // stopped
+        }
+    }
+
+    // The reply to one request: what App prints for the tokens, the symbol table or the diagnostics.
+    static byte[] run(LexicalAnalyzer lexer, TokenBuffer tokens, String kind, String source) {
+        try {
+            lexer.tokenize(source, tokens);
+        } catch (SyntaxError e) {
+            throw new IllegalStateException(e); // not thrown while recovering
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(source.length());
+        PrintStream out = new PrintStream(bytes, false, StandardCharsets.UTF_8);
+        switch (kind) {
+            case "/tokens":
+                for (int i = 0; i < tokens.size(); i++) {
+                    out.println(tokens.token(i));
+                }
+                break;
+            case "/symbols":
+                SymbolTableExtractor.extractSymbols(tokens).print(out);
+                break;
+            default:
+                LexicalErrorHandler.report(lexer.getDiagnostics(), out);
+                break;
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+}
@@ -1,243 +1,361 @@
-import java.util.*;
-
-class LexicalAnalyzer {
-    private Set<String> keywords;
-    private Set<Character> operators;
-    private List<Token> tokens;
-    private int currentLine;
-    private int currentColumn;
-    private String source;
-    private int pos;
-
-    public LexicalAnalyzer() {
-        keywords = new HashSet<>(Arrays.asList("int","if", "else", "while", "for", "return", "true", "false","string","char","float","double","bool","const","switch","case","break","continue","default","void","printf"));
-        operators = new HashSet<>(Arrays.asList('+', '-', '*', '/', '%', '^', '=','>','<','!','&','|'));
-        tokens = new ArrayList<>();
-        currentLine = 1;
-        currentColumn = 1;
-    }
-
-    public List<Token> tokenize(String source) throws SyntaxError {
-        this.source = source;
-        this.pos = 0;
-        tokens.clear();
-
-        while (pos < source.length()) {
-            char ch = source.charAt(pos);
-
-            // Skip whitespace
-            if (Character.isWhitespace(ch)) {
-                if (ch == '\n') {
-                    currentLine++;
-                    currentColumn = 1;
-                } else {
-                    currentColumn++;
-                }
-                pos++;
-                continue;
-            }
-
-            // Handle comments
-            if (ch == '/' && pos + 1 < source.length()) {
-                char nextChar = source.charAt(pos + 1);
-                if (nextChar == '/') {
-                    handleSingleLineComment();
-                    continue;
-                } else if (nextChar == '*') {
-                    handleMultiLineComment();
-                    continue;
-                }
-            }
-
-            // Handle identifiers
-            if (Character.isLowerCase(ch)) {
-                handleIdentifier();
-                continue;
-            }
-
-            // Handle numbers
-            if (Character.isDigit(ch) || ch == '.') {
-                handleNumber();
-                continue;
-            }
-
-            // Handle operators
-            if (operators.contains(ch)) {
-                tokens.add(new Token(TokenType.OPERATOR, 
-                    String.valueOf(ch), currentLine, currentColumn));
-                currentColumn++;
-                pos++;
-                continue;
-            }
-            // Handle strings
-            if (ch == '"') {
-                StringBuilder literal = new StringBuilder();
-                int startColumn = currentColumn;
-                literal.append(ch);
-                currentColumn++;
-                pos++;
-                while (pos < source.length() && source.charAt(pos) != '"') {
-                    ch = source.charAt(pos);
-                    literal.append(ch);
-                    currentColumn++;
-                    pos++;
-                }
-                if (pos < source.length()) {
-                    literal.append('"');
-                    currentColumn++;
-                    pos++;
-                } else {
-                    throw new SyntaxError("Unterminated string literal at line " + currentLine + ", column " + startColumn);
-                }
-                tokens.add(new Token(TokenType.LITERAL, literal.toString(), currentLine, startColumn));
-                continue;
-            }
-
-            if(ch == '\'' && pos + 2 < source.length()){
-                StringBuilder literal = new StringBuilder();
-                int startColumn = currentColumn;
-                literal.append(ch);
-                currentColumn++;
-                pos++;
-                while (pos < source.length() && source.charAt(pos) != '\'') {
-                    ch = source.charAt(pos);
-                    literal.append(ch);
-                    currentColumn++;
-                    pos++;
-                }
-                if (pos < source.length()) {
-                    literal.append('\'');
-                    currentColumn++;
-                    pos++;
-                } else {
-                    throw new SyntaxError("Unterminated character literal at line " + currentLine + ", column " + startColumn);
-                }
-                tokens.add(new Token(TokenType.CHARACTER, literal.toString(), currentLine, startColumn));
-                continue;
-            }
-
-            // Handle semicolons
-            if (ch == ';'||ch == '{'||ch == '}'||ch == '('||ch == ')'||ch == ',' || ch == '[' || ch == ']') { 
-                tokens.add(new Token(TokenType.OPERATOR, 
-                    String.valueOf(ch), currentLine, currentColumn));
-                currentColumn++;
-                pos++;
-                continue;
-            }
-
-            
-
-            throw new SyntaxError("Unrecognized character '" + ch + 
-                "' at line " + currentLine + ", column " + currentColumn);
-                
-        }
-
-        tokens.add(new Token(TokenType.EOF, "", currentLine, currentColumn));
-        return tokens;
-    }
-
-    private void handleIdentifier() {
-        StringBuilder identifier = new StringBuilder();
-        int startColumn = currentColumn;
-
-        while (pos < source.length() && 
-               Character.isLowerCase(source.charAt(pos))||Character.isDigit(source.charAt(pos))||source.charAt(pos)=='_') {
-            identifier.append(source.charAt(pos));
-            currentColumn++;
-            pos++;
-        }
-
-        String identifierStr = identifier.toString();
-        TokenType type = keywords.contains(identifierStr) ? 
-            TokenType.KEYWORD : TokenType.IDENTIFIER;
-        tokens.add(new Token(type, identifierStr, currentLine, startColumn));
-    }
-
-    private void handleNumber() {
-        StringBuilder number = new StringBuilder();
-        int startColumn = currentColumn;
-        boolean isDecimal = false;
-        int decimalPlaces = 0;
-
-        while (pos < source.length()) {
-            char ch = source.charAt(pos);
-            if (Character.isDigit(ch)) {
-                number.append(ch);
-                if (isDecimal) {
-                    decimalPlaces++;
-                }
-            } else if (ch == '.' && !isDecimal) {
-                number.append(ch);
-                isDecimal = true;
-            } else {
-                break;
-            }
-            currentColumn++;
-            pos++;
-        }
-
-        if (isDecimal) {
-            if (decimalPlaces > 5) {
-                double value = Double.parseDouble(number.toString());
-                value = Math.round(value * 100000.0) / 100000.0;
-                number = new StringBuilder(String.valueOf(value));
-            }
-            tokens.add(new Token(TokenType.DECIMAL, number.toString(), 
-                currentLine, startColumn));
-        } else {
-            tokens.add(new Token(TokenType.INTEGER, number.toString(), 
-                currentLine, startColumn));
-        }
-    }
-
-    private void handleSingleLineComment() {
-        int startColumn = currentColumn;
-        StringBuilder comment = new StringBuilder("//");
-        pos += 2; // Skip //
-        
-        while (pos < source.length() && source.charAt(pos) != '\n') {
-            comment.append(source.charAt(pos));
-            pos++;
-            currentColumn++;
-        }
-        
-        tokens.add(new Token(TokenType.COMMENT, comment.toString(), currentLine, startColumn));
-        
-        currentLine++;
-        currentColumn = 1;
-        if (pos < source.length()) pos++;
-    }
-
-    private void handleMultiLineComment() {
-        int startColumn = currentColumn;
-        int startLine = currentLine;
-        StringBuilder comment = new StringBuilder("/*");
-        pos += 2; // Skip /*
-        
-        while (pos < source.length() - 1) {
-            comment.append(source.charAt(pos));
-            if (source.charAt(pos) == '*' && 
-                source.charAt(pos + 1) == '/') {
-                comment.append('/');
-                pos += 2;
-                currentColumn += 2;
-                break;
-            }
-            if (source.charAt(pos) == '\n') {
-                currentLine++;
-                currentColumn = 1;
-            } else {
-                currentColumn++;
-            }
-            pos++;
-        }
-        
-        tokens.add(new Token(TokenType.COMMENT, comment.toString(), startLine, startColumn));
-    }
-}
-
-class SyntaxError extends Exception {
-    public SyntaxError(String message) {
-        super(message);
-    }
-}
\ No newline at end of file
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+class LexicalAnalyzer {
+    // Token rules, compiled once into a single scanner table.
+    private static final ScannerGenerator SPEC = new ScannerGenerator();
+    private static final List<TokenType> TYPES = new ArrayList<>();
+
+    private static final int WHITESPACE = rule(null, "[ \\t\\n\\v\\f\\r\\x1c-\\x1f]+", 0);
+    private static final int LINE_COMMENT = rule(TokenType.COMMENT, "//[^\\n]*", 0);
+    private static final int BLOCK_COMMENT = rule(TokenType.COMMENT, "/\\*([^*]|\\*+[^*/])*\\*+/", 0);
+    private static final int UNCLOSED_COMMENT = rule(TokenType.COMMENT, "/\\*([^*]|\\*+[^*/])*\\**", 0);
+    // Keywords also match IDENTIFIER; Keywords tells them apart, which keeps them out of the table.
+    private static final int IDENTIFIER = rule(TokenType.IDENTIFIER, "[a-z][a-z0-9_]*", 0);
+    private static final int INTEGER = rule(TokenType.INTEGER, "\\d+", 0);
+    private static final int DECIMAL = rule(TokenType.DECIMAL, "\\d*\\.\\d*", 0);
+    private static final int OPERATOR = rule(TokenType.OPERATOR, "[-+*/%^=><!&|;{}(),\\[\\]]", 0);
+    // Literals end at the line break, so an unclosed one costs one line rather than the rest of the file.
+    private static final int STRING = rule(TokenType.LITERAL, "\"[^\"\\n]*\"", 0);
+    private static final int UNCLOSED_STRING = rule(TokenType.ERROR, "\"[^\"\\n]*", 0);
+    private static final int CHARACTER = rule(TokenType.CHARACTER, "'[^'\\n]*'", 0);
+    private static final int UNCLOSED_CHARACTER = rule(TokenType.ERROR, "'[^'\\n]*", 0);
+    // A run of characters that no other rule starts with, so invalid input is one match like any token.
+    private static final int INVALID = rule(TokenType.ERROR, "[^ \\t\\n\\v\\f\\r\\x1c-\\x1fa-z0-9./\\-+*%^=><!&|;{}(),\\[\\]\"']+", 0);
+
+    static final ScannerTable TABLE = generateTable();
+    private static final int LOOKAHEAD = TABLE.lookahead();
+
+    private TokenBuffer tokens;
+    private int currentLine;
+    private int currentColumn;
+    private CharSequence source;
+    private ByteBuffer buffer;
+    private ByteText bytes;
+    private int pos;
+    private boolean recovering;
+    private final List<Diagnostic> diagnostics = new ArrayList<>();
+    private final LexicalChecks checks = new LexicalChecks(diagnostics);
+
+    public LexicalAnalyzer() {
+        tokens = new TokenBuffer();
+        currentLine = 1;
+        currentColumn = 1;
+    }
+
+    /**
+     * Generates the table, or with -Dlexer.table=file loads it from that file unless the rules
+     * have changed since it was written. There is no cache unless one is asked for: a shared default
+     * path could be planted or claimed by another user.
+     */
+    private static ScannerTable generateTable() {
+        String file = System.getProperty("lexer.table", "");
+        return file.isEmpty() ? SPEC.generate() : SPEC.generate(Paths.get(file));
+    }
+
+    private static int rule(TokenType type, String pattern, int priority) {
+        TYPES.add(type);
+        return SPEC.addRule(pattern, priority);
+    }
+
+    /**
+     * In recovering mode invalid input does not throw: a run of unrecognized characters, or an
+     * unterminated string or character literal up to the end of its line, becomes an ERROR token
+     * and a diagnostic, and lexing carries on after it. Both are single matches of the table, so
+     * input full of errors lexes at the same speed as clean input.
+     */
+    public void setRecovering(boolean recovering) {
+        this.recovering = recovering;
+    }
+
+    /**
+     * Problems found by the last tokenize call, in line order: invalid characters, unclosed
+     * literals and comments (in recovering mode), and the checks made by {@link LexicalChecks}.
+     */
+    public List<Diagnostic> getDiagnostics() {
+        return diagnostics;
+    }
+
+    public List<Token> tokenize(String source) throws SyntaxError {
+        return tokenize(source, tokens).toList();
+    }
+
+    // Tokenizes into out, replacing its contents, without creating a Token per token.
+    public TokenBuffer tokenize(CharSequence source, TokenBuffer out) throws SyntaxError {
+        this.buffer = null;
+        this.bytes = null;
+        return scan(source, out);
+    }
+
+    /**
+     * Tokenizes the file's ASCII/UTF-8 bytes through a read-only memory mapping, without decoding
+     * it to a String first. Token offsets and lengths are byte positions in the file and token text
+     * is only decoded when asked for; columns count UTF-16 chars, as in {@link #tokenize(String)}.
+     */
+    public List<Token> tokenize(Path file) throws IOException, SyntaxError {
+        return tokenize(file, tokens).toList();
+    }
+
+    public TokenBuffer tokenize(Path file, TokenBuffer out) throws IOException, SyntaxError {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("File too large to map: " + file);
+            }
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return tokenize(mapped, out);
+        }
+    }
+
+    public List<Token> tokenize(ByteBuffer source) throws SyntaxError {
+        return tokenize(source, tokens).toList();
+    }
+
+    // Tokenizes source's remaining bytes; offsets count from its position.
+    public TokenBuffer tokenize(ByteBuffer source, TokenBuffer out) throws SyntaxError {
+        this.buffer = source.slice();
+        this.bytes = new ByteText(buffer);
+        return scan(bytes, out);
+    }
+
+    private TokenBuffer scan(CharSequence source, TokenBuffer out) throws SyntaxError {
+        this.source = source;
+        this.pos = 0;
+        currentLine = 1;
+        currentColumn = 1;
+        out.reset(source);
+        diagnostics.clear();
+        checks.reset(source);
+
+        int length = source.length();
+        while (pos < length) {
+            step(out, length, true);
+        }
+        checks.finish();
+        diagnostics.sort(Comparator.comparingInt(Diagnostic::getLine));
+
+        out.add(TokenType.EOF, length, 0, currentLine, currentColumn);
+        return out;
+    }
+
+    /**
+     * Updates tokens, the result of tokenizing some text, for an edit that replaced the removed
+     * characters at offset with inserted new ones; source is the edited text. Lexing restarts at
+     * the last token whose scan ended before the edit and stops at the first token past the edit
+     * that starts where an old token did, since the rest of the text lexes as it did before. The
+     * old tokens from there on are kept, moved by the change in length and lines (and columns, on
+     * that line). The cost depends on the tokens around the edit, not the size of the source.
+     * Diagnostics are not updated; tokenize the whole source for those. If a SyntaxError is
+     * thrown (when not recovering) tokens is left empty.
+     */
+    public TokenBuffer relex(TokenBuffer tokens, CharSequence source, int offset, int removed, int inserted) throws SyntaxError {
+        int from = restart(tokens, offset);
+        this.source = source;
+        this.buffer = null;
+        this.bytes = null;
+        if (from >= 0) {
+            pos = tokens.start(from);
+            currentLine = tokens.line(from);
+            currentColumn = tokens.column(from);
+        } else {
+            from = 0;
+            pos = 0;
+            currentLine = 1;
+            currentColumn = 1;
+        }
+        tokens.edit(from, source);
+
+        int delta = inserted - removed;
+        int length = source.length();
+        try {
+            while (true) {
+                if (pos >= offset + inserted) {
+                    int old = pos - delta;
+                    while (tokens.pending() > 0 && tokens.pendingStart() < old) {
+                        tokens.dropPending();
+                    }
+                    if (tokens.pending() > 0 && tokens.pendingStart() == old) {
+                        tokens.shiftPending(delta, currentLine - tokens.pendingLine(), currentColumn - tokens.pendingColumn());
+                        return tokens;
+                    }
+                }
+                if (pos >= length) {
+                    break;
+                }
+                step(tokens, length, false);
+            }
+        } catch (SyntaxError e) {
+            tokens.reset(source);
+            throw e;
+        }
+        while (tokens.pending() > 0) {
+            tokens.dropPending();
+        }
+        tokens.add(TokenType.EOF, length, 0, currentLine, currentColumn);
+        return tokens;
+    }
+
+    /**
+     * Index of the last token that an edit at offset cannot change, because its scan read no
+     * further than LOOKAHEAD characters past its end, or -1 if there is none and lexing has to
+     * start over. Token ends grow with the index, so this is a binary search.
+     */
+    private static int restart(TokenBuffer tokens, int offset) {
+        if (LOOKAHEAD == Integer.MAX_VALUE) {
+            return -1;
+        }
+        int low = 0;
+        int high = tokens.size() - 1;
+        int found = -1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if ((long) tokens.start(mid) + tokens.length(mid) + LOOKAHEAD <= offset) {
+                found = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return found;
+    }
+
+    // Lexes the match at pos into out and moves past it; check also records diagnostics and runs the checks.
+    private void step(TokenBuffer out, int length, boolean check) throws SyntaxError {
+        long match = matchAt(pos, length);
+        int end = ScannerTable.end(match);
+        if (recovering && isError(match)) {
+            out.add(TokenType.ERROR, pos, end - pos, currentLine, currentColumn);
+            if (check) {
+                diagnostics.add(errorDiagnostic(match, end));
+                checks.token(TokenType.ERROR, pos, end, currentLine, currentColumn);
+            }
+            advance(end);
+            return;
+        }
+        int rule = ruleOf(match, source, pos, currentLine, currentColumn);
+        TokenType type = typeOf(rule, source, pos, end);
+        if (rule == UNCLOSED_COMMENT && check) {
+            diagnostics.add(new Diagnostic(Diagnostic.Kind.UNCLOSED_COMMENT, "Unclosed comment",
+                pos, end - pos, currentLine, currentColumn));
+        }
+        if (type != null) {
+            out.add(type, pos, end - pos, currentLine, currentColumn);
+            if (check) {
+                checks.token(type, pos, end, currentLine, currentColumn);
+            }
+        }
+        advance(end);
+    }
+
+    private Diagnostic errorDiagnostic(long match, int end) {
+        if (ScannerTable.rule(match) == INVALID) {
+            String text = source.subSequence(pos, end).toString();
+            String message = text.codePointCount(0, text.length()) == 1 ? "Invalid character '" : "Invalid characters '";
+            return new Diagnostic(Diagnostic.Kind.INVALID_CHARACTER, message + text + "'", pos, end - pos, currentLine, currentColumn);
+        }
+        if (ScannerTable.rule(match) == UNCLOSED_STRING) {
+            return new Diagnostic(Diagnostic.Kind.UNCLOSED_STRING, "Unclosed string literal", pos, end - pos, currentLine, currentColumn);
+        }
+        return new Diagnostic(Diagnostic.Kind.UNCLOSED_CHARACTER, "Unclosed character literal", pos, end - pos, currentLine, currentColumn);
+    }
+
+    private long matchAt(int at, int length) {
+        return buffer != null ? TABLE.match(buffer, at, length) : TABLE.match(source, at, length);
+    }
+
+    private static boolean isError(long match) {
+        if (match == ScannerTable.NONE) {
+            return false; // INVALID matches any character the other rules do not
+        }
+        int rule = ScannerTable.rule(match);
+        return rule == INVALID || rule == UNCLOSED_STRING || rule == UNCLOSED_CHARACTER;
+    }
+
+    // Token type of a match of rule over source[start, end); null for whitespace.
+    static TokenType typeOf(int rule, CharSequence source, int start, int end) {
+        if (rule == IDENTIFIER && Keywords.lookup(source, start, end) >= 0) {
+            return TokenType.KEYWORD;
+        }
+        return TYPES.get(rule);
+    }
+
+    /**
+     * Token for a match of TABLE starting at pos, or null for whitespace. Throws for unrecognized
+     * characters and unterminated literals.
+     */
+    static Token toToken(long match, CharSequence source, int pos, int line, int column) throws SyntaxError {
+        int rule = ruleOf(match, source, pos, line, column);
+        if (rule == WHITESPACE) {
+            return null;
+        }
+        int end = ScannerTable.end(match);
+        String value = source.subSequence(pos, end).toString();
+        if (rule == DECIMAL) {
+            value = roundDecimal(value);
+        }
+        return new Token(typeOf(rule, source, pos, end), value, line, column);
+    }
+
+    // The rule of a match, or a SyntaxError if it is not a valid token.
+    static int ruleOf(long match, CharSequence source, int pos, int line, int column) throws SyntaxError {
+        if (match == ScannerTable.NONE || ScannerTable.rule(match) == INVALID) {
+            String c = source instanceof ByteText ? ((ByteText) source).charText(pos) : String.valueOf(source.charAt(pos));
+            throw new SyntaxError("Unrecognized character '" + c + "' at line " + line + ", column " + column);
+        }
+        int rule = ScannerTable.rule(match);
+        if (rule == UNCLOSED_STRING) {
+            throw new SyntaxError("Unterminated string literal at line " + line + ", column " + column);
+        }
+        if (rule == UNCLOSED_CHARACTER) {
+            throw new SyntaxError("Unterminated character literal at line " + line + ", column " + column);
+        }
+        return rule;
+    }
+
+    // Moves pos to end, keeping the line and column counters in step.
+    private void advance(int end) {
+        if (buffer != null) {
+            advanceBytes(end);
+            return;
+        }
+        while (pos < end) {
+            if (source.charAt(pos) == '\n') {
+                currentLine++;
+                currentColumn = 1;
+            } else {
+                currentColumn++;
+            }
+            pos++;
+        }
+    }
+
+    // advance() over UTF-8: each byte moves the column by the chars it decodes to (see ByteText.width).
+    private void advanceBytes(int end) {
+        while (pos < end) {
+            byte b = buffer.get(pos);
+            if (b == '\n') {
+                currentLine++;
+                currentColumn = 1;
+            } else {
+                currentColumn += ByteText.width(b);
+            }
+            pos++;
+        }
+    }
+
+    // Decimals keep at most five decimal places.
+    static String roundDecimal(String number) {
+        int dot = number.indexOf('.');
+        if (number.length() - dot - 1 > 5) {
+            double value = Double.parseDouble(number);
+            value = Math.round(value * 100000.0) / 100000.0;
+            return String.valueOf(value);
+        }
+        return number;
+    }
+}
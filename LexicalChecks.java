@@ -0,0 +1,189 @@
+import java.util.*;
+
+/**
+ * Checks that need more than one token, fed by the lexer as it goes: numbers run together with
+ * a following name or number ({@code 12a}, {@code 1.2.3}), {@code ===}, assignments whose line
+ * ends without a semicolon, and a name in type position that is a near miss for a keyword
+ * ({@code intr x}); names that are not close to any keyword are taken to be user-defined types.
+ * Comments are ignored; ERROR tokens only break up the number and operator checks.
+ */
+class LexicalChecks {
+    private final List<Diagnostic> out;
+    private CharSequence source;
+
+    private TokenType previous;
+    private int previousEnd;
+    private boolean numberReported;
+    private int numberStart;
+    private int numberLine;
+    private int numberColumn;
+    private int equalsRun;
+    private int equalsStart;
+    private int equalsLine;
+    private int equalsColumn;
+
+    // state of the current line
+    private int line;
+    private int tokensOnLine;
+    private int firstStart;
+    private int firstLength;
+    private int firstColumn;
+    private boolean nameFirst; // the line opened with a name and no other token has followed yet
+    private boolean assignment;
+    private boolean assignmentBefore;
+    private int depth;
+    private TokenType lastType;
+    private int lastStart;
+    private int lastEnd;
+    private int lastColumn;
+
+    public LexicalChecks(List<Diagnostic> out) {
+        this.out = out;
+    }
+
+    public void reset(CharSequence source) {
+        this.source = source;
+        previous = null;
+        previousEnd = -1;
+        equalsRun = 0;
+        depth = 0;
+        line = 0;
+        tokensOnLine = 0;
+    }
+
+    public void token(TokenType type, int start, int end, int line, int column) {
+        if (type == TokenType.COMMENT) {
+            return;
+        }
+        if (line != this.line) {
+            endLine();
+            this.line = line;
+        }
+        boolean adjacent = start == previousEnd;
+        char c = type == TokenType.OPERATOR ? source.charAt(start) : 0;
+
+        if (isNumber(previous) && adjacent && !numberReported
+            && (type == TokenType.IDENTIFIER || type == TokenType.KEYWORD || isNumber(type))) {
+            out.add(new Diagnostic(Diagnostic.Kind.INVALID_NUMBER, "Invalid number format", numberStart, end - numberStart,
+                numberLine, numberColumn));
+            numberReported = true;
+        } else if (!adjacent || !isNumber(type)) {
+            numberReported = false;
+        }
+        if (isNumber(type) && !(adjacent && isNumber(previous))) {
+            numberStart = start;
+            numberLine = line;
+            numberColumn = column;
+        }
+
+        if (type == TokenType.OPERATOR && c == '=') {
+            if (adjacent && equalsRun > 0) {
+                equalsRun++;
+            } else {
+                equalsRun = 1;
+                equalsStart = start;
+                equalsLine = line;
+                equalsColumn = column;
+            }
+            if (equalsRun == 3) {
+                out.add(new Diagnostic(Diagnostic.Kind.EXCESS_OPERATOR, "Excess operator '==='", equalsStart, 3, equalsLine, equalsColumn));
+            }
+        } else {
+            equalsRun = 0;
+        }
+
+        if (type == TokenType.OPERATOR) {
+            if (c == '(' || c == '[') {
+                depth++;
+            } else if ((c == ')' || c == ']') && depth > 0) {
+                depth--;
+            } else if (c == '=' && depth == 0) {
+                if (adjacent && lastType == TokenType.OPERATOR && "=!<>".indexOf(source.charAt(start - 1)) >= 0) {
+                    assignment = assignmentBefore; // part of ==, !=, <= or >=
+                } else {
+                    assignmentBefore = assignment;
+                    assignment = true;
+                }
+            }
+        }
+
+        if (tokensOnLine == 0) {
+            firstStart = start;
+            firstLength = end - start;
+            firstColumn = column;
+            nameFirst = type == TokenType.IDENTIFIER;
+        } else if (nameFirst && type != TokenType.ERROR) {
+            int keyword = type == TokenType.IDENTIFIER ? KeywordSuggester.suggest(source, firstStart, firstStart + firstLength) : -1;
+            if (keyword >= 0) {
+                String word = source.subSequence(firstStart, firstStart + firstLength).toString();
+                out.add(new Diagnostic(Diagnostic.Kind.MISSPELLED_KEYWORD,
+                    "misspelled keyword '" + word + "', did you mean '" + Keywords.WORDS[keyword] + "'?",
+                    firstStart, firstLength, line, firstColumn));
+            }
+            nameFirst = false;
+        }
+
+        tokensOnLine++;
+        lastType = type;
+        lastStart = start;
+        lastEnd = end;
+        lastColumn = column;
+        previous = type;
+        previousEnd = end;
+    }
+
+    public void finish() {
+        endLine();
+        line = 0;
+    }
+
+    private void endLine() {
+        if (tokensOnLine > 0 && assignment && endsOperand()) {
+            out.add(new Diagnostic(Diagnostic.Kind.MISSING_SEMICOLON, "Missing semicolon", lastEnd, 0, line,
+                lastColumn + columns(lastStart, lastEnd)));
+        }
+        tokensOnLine = 0;
+        assignment = false;
+        assignmentBefore = false;
+    }
+
+    // Columns taken up by source[start, end): UTF-16 chars, decoded from the bytes over UTF-8.
+    private int columns(int start, int end) {
+        return source instanceof ByteText ? ((ByteText) source).charCount(start, end) : end - start;
+    }
+
+    // The line's last token could end a statement, so a ';' was expected after it.
+    private boolean endsOperand() {
+        switch (lastType) {
+            case IDENTIFIER:
+            case INTEGER:
+            case DECIMAL:
+            case LITERAL:
+            case CHARACTER:
+                return true;
+            case KEYWORD:
+                return spells("true") || spells("false");
+            case OPERATOR:
+                char c = source.charAt(lastStart);
+                return c == ')' || c == ']';
+            default:
+                return false;
+        }
+    }
+
+    private boolean spells(String word) {
+        if (lastEnd - lastStart != word.length()) {
+            return false;
+        }
+        for (int i = 0; i < word.length(); i++) {
+            if (source.charAt(lastStart + i) != word.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isNumber(TokenType type) {
+        return type == TokenType.INTEGER || type == TokenType.DECIMAL;
+    }
+}
@@ -0,0 +1,38 @@
+/**
+ * A compiled pattern (or set of rules) that finds longest matches. ScannerTable builds the whole DFA
+ * up front; LazyDFA builds only the states the input reaches; PikeVM simulates the NFA; and
+ * BitParallelMatcher simulates the Glushkov automaton of a small pattern in the bits of a long.
+ */
+public interface MatchEngine {
+	// The engines a single pattern can be compiled to with compile(String, Kind).
+	enum Kind {
+		TABLE, LAZY, PIKE, BIT_PARALLEL
+	}
+
+	int LAZY_STATES = 4096; // cache size of a LAZY engine
+
+	/**
+	 * Longest match starting at {@code pos} and ending by {@code end}. Returns ScannerTable.NONE when no
+	 * rule matches a non-empty prefix, otherwise the rule and end offset packed as by ScannerTable.
+	 */
+	long match(CharSequence src, int pos, int end);
+
+	// Whether the whole of src, which may be empty, is accepted by some rule.
+	boolean matches(CharSequence src);
+
+	// re compiled by the engine of the given kind. BIT_PARALLEL throws IllegalArgumentException for patterns with too many positions.
+	static MatchEngine compile(String re, Kind kind) {
+		switch (kind) {
+		case LAZY:
+			return new LazyDFA(re, LAZY_STATES);
+		case PIKE:
+			return new PikeVM(re);
+		case BIT_PARALLEL:
+			return new BitParallelMatcher(re);
+		default:
+			ScannerGenerator generator = new ScannerGenerator();
+			generator.addRule(re, 0);
+			return generator.generate();
+		}
+	}
+}
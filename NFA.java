@@ -1,298 +1,573 @@
-import java.util.HashSet;
-import java.util.Set;
-import java.util.Stack;
-
-//import print.ConsoleTable;
-//import simple.Cell;
-//import simple.Pair;
-
-public class NFA {
-
-	private int restate = 0;
-	
-	private String re;
-	private String reJoined;
-	private String rePostfix;
-
-	private String[] letter;
-	private Pair pair;
-	
-	private ConsoleTable table;
-
-	public NFA(String re) {
-		this.re = re;
-		reJoined = null;
-		rePostfix = null;
-		Set<Character> temp = new HashSet<>();
-		for(int i=0;i<this.re.length();i++){
-			if(is_letter(this.re.charAt(i))){
-				temp.add(this.re.charAt(i));
-			}
-		}
-		letter = new String[temp.size()+2];
-		Object []tempObj = temp.toArray();
-		int i=0;
-		letter[i] = "";
-		for (;i<tempObj.length;i++) {
-			letter[i+1] = (char)tempObj[i]+"";
-		}
-		letter[i+1] = "EPSILON";
-		table = new ConsoleTable(letter.length, true);
-		table.appendRow();
-		for (String string : letter) {
-			table.appendColum(string);
-		}
-	}
-
-	public Pair getPair() {
-		return pair;
-	}
-	
-	public String[] getLetter() {
-		return letter;
-	}
-
-	public void setPair(Pair pair) {
-		this.pair = pair;
-	}
-
-	public String add_join_symbol() {
-		int length = re.length();
-		if(length==1) {
-			System.out.println("add join symbol:" + re);
-			reJoined = re;
-			return re;
-		}
-		int return_string_length = 0;
-		char return_string[] = new char[2 * length + 2];
-		char first, second = '0';
-		for (int i = 0; i < length - 1; i++) {
-			first = re.charAt(i);
-			second = re.charAt(i + 1);
-			return_string[return_string_length++] = first;
-			if (first != '(' && first != '|' && is_letter(second)) {
-				return_string[return_string_length++] = '.';
-			}
-			else if (second == '(' && first != '|' && first != '(') {
-				return_string[return_string_length++] = '.';
-			}
-		}
-		return_string[return_string_length++] = second;
-		String rString = new String(return_string, 0, return_string_length);
-		System.out.println("add join symbol:" + rString);
-		System.out.println();
-		reJoined = rString;
-		return rString;
-	}
-
-	private boolean is_letter(char check) {
-		{
-			if (check >= 'a' && check <= 'z' || check >= 'A' && check <= 'Z')
-				return true;
-			return false;
-		}
-	}
-
-	public String postfix() {
-		reJoined = reJoined + "#";
-
-		Stack<Character> s = new Stack<>();
-		char ch = '#', ch1, op;
-		s.push(ch);
-		String out_string = "";
-		int read_location = 0;
-		ch = reJoined.charAt(read_location++);
-		while (!s.empty()) {
-			if (is_letter(ch)) {
-				out_string = out_string + ch;
-				ch = reJoined.charAt(read_location++);
-			} else {
-				ch1 = s.peek();
-				if (isp(ch1) < icp(ch)) {
-					s.push(ch);
-					ch = reJoined.charAt(read_location++);
-				} else if (isp(ch1) > icp(ch)) {
-					op = s.pop();
-					out_string = out_string + op;
-				} else {
-					op = s.pop();
-					if (op == '(')
-						ch = reJoined.charAt(read_location++);
-				}
-			}
-		}
-		System.out.println("postfix:" + out_string);
-		System.out.println();
-		rePostfix = out_string;
-		return out_string;
-	}
-
-	private int isp(char c) {
-		switch (c) {
-		case '#':
-			return 0;
-		case '(':
-			return 1;
-		case '*':
-			return 7;
-		case '+':
-			return 7;
-		case '.':
-			return 5;
-		case '|':
-			return 3;
-		case ')':
-			return 8;
-		}
-		return -1;
-	}
-
-	private int icp(char c) {
-		switch (c) {
-		case '#':
-			return 0;
-		case '(':
-			return 8;
-		case '*':
-			return 6;
-		case '+':
-			return 6;
-		case '.':
-			return 4;
-		case '|':
-			return 2;
-		case ')':
-			return 1;
-		}
-		return -1;
-	}
-
-	public void re2nfa() {
-		pair = new Pair();
-		Pair temp = new Pair();
-		Pair right, left;
-		NfaConstructor constructor = new NfaConstructor();
-		char ch[] = rePostfix.toCharArray();
-		Stack<Pair> stack = new Stack<>();
-		for (char c : ch) {
-			switch (c) {
-			case '|':
-				right = stack.pop();
-				left = stack.pop();
-				pair = constructor.constructNfaForOR(left, right);
-				stack.push(pair);
-				break;
-			case '*':
-				temp = stack.pop();
-				pair = constructor.constructStarClosure(temp);
-				stack.push(pair);
-				break;
-			case '+':
-				temp = stack.pop();
-				pair = constructor.constructPlusClosure(temp);
-				stack.push(pair);
-				break;
-			case '.':
-				right = stack.pop();
-				left = stack.pop();
-				pair = constructor.constructNfaForConnector(left, right);
-				stack.push(pair);
-				break;
-			default:
-				pair = constructor.constructNfaForSingleCharacter(c);
-				stack.push(pair);
-				break;
-			}
-		}
-	}
-
-	public void print() {
-		restate(this.pair.startNode);
-		revisit(this.pair.startNode);
-		System.out.println("--------NFA--------");
-		table.appendRow();
-		printNfa(this.pair.startNode);
-		System.out.print(table);
-		revisit(this.pair.startNode);
-		System.out.println("--------NFA--------");
-		System.out.println("start state: " + (this.pair.startNode.getState()));
-		System.out.println("end state: " + (this.pair.endNode.getState()));
-	}
-
-	private void restate(Cell startNfa) {
-		if (startNfa == null || startNfa.isVisited()) {
-			return;
-		}
-		startNfa.setVisited();
-		startNfa.setState(restate++);
-		restate(startNfa.next);
-		restate(startNfa.next2);
-	}
-	private void revisit(Cell startNfa) {
-		if (startNfa == null || !startNfa.isVisited()) {
-			return;
-		}
-		startNfa.setUnVisited();
-		revisit(startNfa.next);
-		revisit(startNfa.next2);
-	}
-
-	private void printNfa(Cell startNfa) {
-		if (startNfa == null || startNfa.isVisited()) {
-			return;
-		}
-
-		startNfa.setVisited();
-
-		printNfaNode(startNfa);
-		if (startNfa.next != null) {
-			table.appendRow();
-		}
-		printNfa(startNfa.next);
-		printNfa(startNfa.next2);
-	}
-
-	private void printNfaNode(Cell node) {
-		if (node.next != null) {
-			table.appendColum(node.getState());
-			if(node.getEdge()==-1) {
-				for(int i=0;i<letter.length-2;i++) {
-					table.appendColum(" ");
-				}
-				if (node.next2 != null)
-					table.appendColum("{"+node.next.getState()+","+node.next2.getState()+"}");
-				else
-					table.appendColum("{"+node.next.getState()+"}");
-				}
-			else {
-				int index = getindex(""+(char)node.getEdge());
-				for(int i=0;i<letter.length-1;i++) {
-					if(i!=index)
-						table.appendColum(" ");
-					else {
-						if (node.next2 != null)
-							table.appendColum("{"+node.next.getState()+","+node.next2.getState()+"}");
-						else
-							table.appendColum("{"+node.next.getState()+"}");
-					}
-				}
-			}
-		}
-		else {
-			table.appendColum(node.getState());
-			table.appendColum(" ");
-			table.appendColum(" ");
-			table.appendRow();
-		}
-	}
-	
-	//“”,a,b,EPS
-	private int getindex(String ch) {
-		for (int i=0;i<letter.length;i++) {
-			if(letter[i].equals(ch))
-				return i-1;
-		}
-		return -1;
-	}
-	
-}
\ No newline at end of file
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.Stack;
+
+//import print.ConsoleTable;
+//import simple.Cell;
+//import simple.Pair;
+
+public class NFA {
+
+	private static final int CHARS = Character.MAX_VALUE + 1;
+
+	private String re;
+	private String reJoined;
+	private String rePostfix;
+
+	private String[] letter;
+	private Map<Integer, String> classLabel = new HashMap<>();
+	private Pair pair;
+	
+	private ConsoleTable table;
+	private final VisitMarks marks = new VisitMarks(0); // reused by every walk over this NFA
+
+	public NFA(String re) {
+		this.re = re;
+		reJoined = null;
+		rePostfix = null;
+		Set<Character> temp = new HashSet<>();
+		Set<String> classes = new LinkedHashSet<>();
+		for(int i=0;i<this.re.length();){
+			if(!startsOperand(this.re.charAt(i))){
+				i++;
+				continue;
+			}
+			int end = operandEnd(this.re, i);
+			String unit = this.re.substring(i, end);
+			BitSet set = operand(unit);
+			if(set.cardinality()==1)
+				temp.add((char)set.nextSetBit(0));
+			else
+				classes.add(unit);
+			i = end;
+		}
+		letter = new String[temp.size()+classes.size()+2];
+		Object []tempObj = temp.toArray();
+		int i=0;
+		letter[i] = "";
+		for (;i<tempObj.length;i++) {
+			letter[i+1] = label((char)tempObj[i]);
+		}
+		for (String unit : classes) {
+			letter[++i] = unit;
+		}
+		letter[i+1] = "EPSILON";
+		table = new ConsoleTable(letter.length, true);
+		table.appendRow();
+		for (String string : letter) {
+			table.appendColum(string);
+		}
+	}
+
+	public Pair getPair() {
+		return pair;
+	}
+	
+	public String[] getLetter() {
+		return letter;
+	}
+
+	public void setPair(Pair pair) {
+		this.pair = pair;
+	}
+
+	public String add_join_symbol() {
+		reJoined = join(re);
+		System.out.println("add join symbol:" + reJoined);
+		if(re.length()>1)
+			System.out.println();
+		return reJoined;
+	}
+
+	// Compiles the expression without printing the intermediate forms.
+	public Pair build(NfaManager manager) {
+		reJoined = join(re);
+		rePostfix = toPostfix(reJoined);
+		re2nfa(manager);
+		return pair;
+	}
+
+	private String join(String re) {
+		StringBuilder out = new StringBuilder(2 * re.length() + 2);
+		boolean operand = false;
+		for (int i = 0; i < re.length();) {
+			char c = re.charAt(i);
+			int end = startsOperand(c) ? operandEnd(re, i) : i + 1;
+			if (operand && (c == '(' || startsOperand(c))) {
+				out.append('.');
+			}
+			out.append(re, i, end);
+			operand = c != '(' && c != '|';
+			i = end;
+		}
+		return out.toString();
+	}
+
+	// Operator characters; every other character is a literal. Escape an operator with '\\' to match it.
+	public static boolean isOperator(char c) {
+		return "()|*+.#\\[]".indexOf(c) >= 0;
+	}
+
+	// Operands are literals, escapes such as \n or \d, and bracket expressions such as [a-z] or [^"\n].
+	private static boolean startsOperand(char c) {
+		return c == '\\' || c == '[' || !isOperator(c);
+	}
+
+	private static int operandEnd(String s, int i) {
+		char c = s.charAt(i);
+		if (c == '\\') {
+			char e = i + 1 < s.length() ? s.charAt(i + 1) : 0;
+			int len = e == 'x' ? 4 : e == 'u' ? 6 : 2;
+			return Math.min(i + len, s.length());
+		}
+		if (c == '[') {
+			int j = i + 1;
+			if (j < s.length() && s.charAt(j) == '^')
+				j++;
+			if (j < s.length() && s.charAt(j) == ']')
+				j++;
+			while (j < s.length() && s.charAt(j) != ']') {
+				j = s.charAt(j) == '\\' ? operandEnd(s, j) : j + 1;
+			}
+			return Math.min(j + 1, s.length());
+		}
+		return i + 1;
+	}
+
+	/**
+	 * The expression with every operand spelled one way: a single character as itself (or as a
+	 * hex escape unless it is a letter or digit), anything else as a bracket expression of sorted
+	 * ranges. Expressions that only differ in how they spell the same characters, such as [a-c]
+	 * and [cba] or \+ and [+], normalize to the same string.
+	 */
+	static String normalize(String re) {
+		StringBuilder out = new StringBuilder(re.length());
+		for (int i = 0; i < re.length();) {
+			char c = re.charAt(i);
+			if (!startsOperand(c)) {
+				out.append(c);
+				i++;
+				continue;
+			}
+			int end = operandEnd(re, i);
+			BitSet set = operand(re.substring(i, end));
+			if (set.isEmpty()) {
+				out.append(re, i, end);
+			}
+			else if (set.cardinality() == 1) {
+				appendNormalized(out, set.nextSetBit(0));
+			}
+			else {
+				out.append('[');
+				for (int lo = set.nextSetBit(0); lo >= 0; lo = set.nextSetBit(lo)) {
+					int hi = set.nextClearBit(lo) - 1;
+					appendNormalized(out, lo);
+					if (hi > lo) {
+						out.append('-');
+						appendNormalized(out, hi);
+					}
+					lo = hi + 1;
+				}
+				out.append(']');
+			}
+			i = end;
+		}
+		return out.toString();
+	}
+
+	private static void appendNormalized(StringBuilder out, int c) {
+		if (c < 0x80 && Character.isLetterOrDigit(c))
+			out.append((char) c);
+		else
+			out.append(String.format("\\u%04x", c));
+	}
+
+	// The set of characters an operand matches.
+	private static BitSet operand(String unit) {
+		BitSet set = new BitSet();
+		char c = unit.charAt(0);
+		if (c == '\\')
+			escape(unit, 0, set);
+		else if (c == '[')
+			bracket(unit, set);
+		else
+			set.set(c);
+		return set;
+	}
+
+	// Adds the characters matched by the escape at s[i] to set and returns the index after it.
+	private static int escape(String s, int i, BitSet set) {
+		if (i + 1 >= s.length()) {
+			set.set('\\');
+			return i + 1;
+		}
+		char e = s.charAt(i + 1);
+		switch (e) {
+		case 'n':
+			set.set('\n');
+			break;
+		case 't':
+			set.set('\t');
+			break;
+		case 'r':
+			set.set('\r');
+			break;
+		case 'f':
+			set.set('\f');
+			break;
+		case 'v':
+			set.set(0x0B);
+			break;
+		case '0':
+			set.set(0);
+			break;
+		case 'd':
+			set.set('0', '9' + 1);
+			break;
+		case 'w':
+			set.set('a', 'z' + 1);
+			set.set('A', 'Z' + 1);
+			set.set('0', '9' + 1);
+			set.set('_');
+			break;
+		case 's':
+			set.set(' ');
+			set.set('\t', '\r' + 1);
+			break;
+		case 'D':
+		case 'W':
+		case 'S':
+			BitSet inner = new BitSet();
+			escape("\\" + Character.toLowerCase(e), 0, inner);
+			inner.flip(0, CHARS);
+			set.or(inner);
+			break;
+		case 'x':
+			return hex(s, i, 2, set);
+		case 'u':
+			return hex(s, i, 4, set);
+		default:
+			set.set(e);
+		}
+		return i + 2;
+	}
+
+	// Adds the character of the hex escape (x or u) at s[i], which has digits hex digits, to set.
+	private static int hex(String s, int i, int digits, BitSet set) {
+		int end = i + 2 + digits;
+		int value = 0;
+		for (int j = i + 2; j < end; j++) {
+			int d = j < s.length() && s.charAt(j) < 0x80 ? Character.digit(s.charAt(j), 16) : -1;
+			if (d < 0)
+				throw new IllegalArgumentException("malformed escape " + s.substring(i, Math.min(end, s.length())) + ": expected " + digits + " hex digits");
+			value = value * 16 + d;
+		}
+		set.set(value);
+		return end;
+	}
+
+	private static void bracket(String unit, BitSet set) {
+		int end = unit.length() - 1;
+		int i = 1;
+		boolean negate = i < end && unit.charAt(i) == '^';
+		if (negate)
+			i++;
+		while (i < end) {
+			int lo;
+			if (unit.charAt(i) == '\\') {
+				BitSet item = new BitSet();
+				i = escape(unit, i, item);
+				if (item.cardinality() != 1) {
+					set.or(item);
+					continue;
+				}
+				lo = item.nextSetBit(0);
+			}
+			else {
+				lo = unit.charAt(i++);
+			}
+			if (i + 1 < end && unit.charAt(i) == '-') {
+				int hi;
+				if (unit.charAt(i + 1) == '\\') {
+					BitSet item = new BitSet();
+					i = escape(unit, i + 1, item);
+					hi = item.nextSetBit(0);
+				}
+				else {
+					hi = unit.charAt(i + 1);
+					i += 2;
+				}
+				if (hi >= lo)
+					set.set(lo, hi + 1);
+			}
+			else {
+				set.set(lo);
+			}
+		}
+		if (negate)
+			set.flip(0, CHARS);
+	}
+
+	// Printable form of a character for table headers.
+	static String label(char c) {
+		switch (c) {
+		case '\n':
+			return "\\n";
+		case '\t':
+			return "\\t";
+		case '\r':
+			return "\\r";
+		}
+		if (c < 0x20 || c >= 0x7f)
+			return String.format("\\u%04x", (int) c);
+		return String.valueOf(c);
+	}
+
+	public String postfix() {
+		rePostfix = toPostfix(reJoined);
+		System.out.println("postfix:" + rePostfix);
+		System.out.println();
+		return rePostfix;
+	}
+
+	private String toPostfix(String joined) {
+		joined = joined + "#";
+
+		Stack<Character> s = new Stack<>();
+		char ch = '#', ch1, op;
+		s.push(ch);
+		StringBuilder out_string = new StringBuilder(joined.length());
+		int read_location = 0;
+		ch = joined.charAt(read_location++);
+		while (!s.empty()) {
+			if (startsOperand(ch)) {
+				int end = operandEnd(joined, read_location - 1);
+				out_string.append(joined, read_location - 1, end);
+				read_location = end;
+				ch = joined.charAt(read_location++);
+			} else {
+				ch1 = s.peek();
+				if (isp(ch1) < icp(ch)) {
+					s.push(ch);
+					ch = joined.charAt(read_location++);
+				} else if (isp(ch1) > icp(ch)) {
+					op = s.pop();
+					out_string.append(op);
+				} else {
+					op = s.pop();
+					if (op == '(')
+						ch = joined.charAt(read_location++);
+				}
+			}
+		}
+		return out_string.toString();
+	}
+
+	private int isp(char c) {
+		switch (c) {
+		case '#':
+			return 0;
+		case '(':
+			return 1;
+		case '*':
+			return 7;
+		case '+':
+			return 7;
+		case '.':
+			return 5;
+		case '|':
+			return 3;
+		case ')':
+			return 8;
+		}
+		return -1;
+	}
+
+	private int icp(char c) {
+		switch (c) {
+		case '#':
+			return 0;
+		case '(':
+			return 8;
+		case '*':
+			return 6;
+		case '+':
+			return 6;
+		case '.':
+			return 4;
+		case '|':
+			return 2;
+		case ')':
+			return 1;
+		}
+		return -1;
+	}
+
+	public void re2nfa() {
+		re2nfa(new NfaManager());
+		number();
+	}
+
+	public void re2nfa(NfaManager manager) {
+		pair = new Pair();
+		Pair temp = new Pair();
+		Pair right, left;
+		NfaConstructor constructor = new NfaConstructor(manager);
+		char ch[] = rePostfix.toCharArray();
+		Stack<Pair> stack = new Stack<>();
+		for (int i = 0; i < ch.length; i++) {
+			char c = ch[i];
+			switch (c) {
+			case '|':
+				right = stack.pop();
+				left = stack.pop();
+				pair = constructor.constructNfaForOR(left, right);
+				stack.push(pair);
+				break;
+			case '*':
+				temp = stack.pop();
+				pair = constructor.constructStarClosure(temp);
+				stack.push(pair);
+				break;
+			case '+':
+				temp = stack.pop();
+				pair = constructor.constructPlusClosure(temp);
+				stack.push(pair);
+				break;
+			case '.':
+				right = stack.pop();
+				left = stack.pop();
+				pair = constructor.constructNfaForConnector(left, right);
+				stack.push(pair);
+				break;
+			default:
+				int end = operandEnd(rePostfix, i);
+				String unit = rePostfix.substring(i, end);
+				BitSet set = operand(unit);
+				if (set.cardinality() == 1) {
+					pair = constructor.constructNfaForSingleCharacter((char) set.nextSetBit(0));
+				}
+				else {
+					pair = constructor.constructNfaForCharClass(set);
+					classLabel.put(pair.startNode.getCharClass(), unit);
+				}
+				stack.push(pair);
+				i = end - 1;
+				break;
+			}
+		}
+	}
+
+	public void print() {
+		System.out.println("--------NFA--------");
+		table.appendRow();
+		printNfa(this.pair.startNode);
+		System.out.print(table);
+		System.out.println("--------NFA--------");
+		System.out.println("start state: " + (this.pair.startNode.getState()));
+		System.out.println("end state: " + (this.pair.endNode.getState()));
+	}
+
+	/**
+	 * Numbers the states in the order of a depth-first walk from the start state (next before next2),
+	 * the order print() lists them in. Only for an NFA with a manager of its own: the states of NFAs
+	 * sharing a manager are numbered by the manager.
+	 */
+	private void number() {
+		NfaManager manager = pair.startNode.getManager();
+		int[] order = preorder(pair.startNode);
+		for (int i = 0; i < order.length; i++) {
+			manager.setState(order[i], i);
+		}
+	}
+
+	private void printNfa(Cell startNfa) {
+		NfaManager manager = startNfa.getManager();
+		for (int cell : preorder(startNfa)) {
+			Cell node = manager.cell(cell);
+			printNfaNode(node);
+			if (node.getNext() != null) {
+				table.appendRow();
+			}
+		}
+	}
+
+	/**
+	 * Manager indexes of the cells reachable from start, in depth-first preorder taking next before
+	 * next2. The walk keeps its own stack and marks, so a long expression cannot overflow the call
+	 * stack and the NFA is only read. The marks are cleared, not reallocated, between walks.
+	 */
+	private int[] preorder(Cell start) {
+		NfaManager manager = start.getManager();
+		marks.clear();
+		int[] order = new int[16];
+		int count = 0;
+		int[] stack = new int[16];
+		int top = 0;
+		stack[top++] = start.getIndex();
+		while (top > 0) {
+			int cell = stack[--top];
+			if (!marks.visit(cell))
+				continue;
+			if (count == order.length)
+				order = Arrays.copyOf(order, count * 2);
+			order[count++] = cell;
+			if (top + 2 > stack.length)
+				stack = Arrays.copyOf(stack, stack.length * 2);
+			if (manager.getNext2(cell) != NfaManager.NONE)
+				stack[top++] = manager.getNext2(cell);
+			if (manager.getNext(cell) != NfaManager.NONE)
+				stack[top++] = manager.getNext(cell);
+		}
+		return Arrays.copyOf(order, count);
+	}
+
+	private void printNfaNode(Cell node) {
+		if (node.getNext() != null) {
+			table.appendColum(node.getState());
+			if(node.getEdge()==-1) {
+				for(int i=0;i<letter.length-2;i++) {
+					table.appendColum(" ");
+				}
+				if (node.getNext2() != null)
+					table.appendColum("{"+node.getNext().getState()+","+node.getNext2().getState()+"}");
+				else
+					table.appendColum("{"+node.getNext().getState()+"}");
+				}
+			else {
+				int index = getindex(node.getEdge()==Cell.CCL ? classLabel.get(node.getCharClass()) : label((char)node.getEdge()));
+				for(int i=0;i<letter.length-1;i++) {
+					if(i!=index)
+						table.appendColum(" ");
+					else {
+						if (node.getNext2() != null)
+							table.appendColum("{"+node.getNext().getState()+","+node.getNext2().getState()+"}");
+						else
+							table.appendColum("{"+node.getNext().getState()+"}");
+					}
+				}
+			}
+		}
+		else {
+			table.appendColum(node.getState());
+			table.appendColum(" ");
+			table.appendColum(" ");
+			table.appendRow();
+		}
+	}
+	
+	//“”,a,b,EPS
+	private int getindex(String ch) {
+		for (int i=0;i<letter.length;i++) {
+			if(letter[i].equals(ch))
+				return i-1;
+		}
+		return -1;
+	}
+	
+}
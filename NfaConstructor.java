@@ -1,78 +1,100 @@
-//import simple.Pair;
-
-public class NfaConstructor {
-	private NfaManager nfaManager = null;
-
-	public NfaConstructor() {
-		nfaManager = new NfaManager();
-	}
-
-	public Pair constructStarClosure(Pair pairIn) {
-		Pair pairOut = new Pair();
-		pairOut.startNode = nfaManager.newNfa();
-		pairOut.endNode = nfaManager.newNfa();
-
-		pairOut.startNode.next = pairIn.startNode;
-		pairIn.endNode.next = pairOut.endNode;
-
-		pairOut.startNode.next2 = pairOut.endNode;
-		pairIn.endNode.next2 = pairIn.startNode;
-
-		pairIn.startNode = pairOut.startNode;
-		pairIn.endNode = pairOut.endNode;
-
-		return pairOut;
-	}
-
-	public Pair constructPlusClosure(Pair pairIn) {
-		Pair pairOut = new Pair();
-
-		pairOut.startNode = nfaManager.newNfa();
-		pairOut.endNode = nfaManager.newNfa();
-
-		pairOut.startNode.next = pairIn.startNode;
-		pairIn.endNode.next = pairOut.endNode;
-
-		pairIn.endNode.next2 = pairOut.startNode;
-
-		pairIn.startNode = pairOut.startNode;
-		pairIn.endNode = pairOut.endNode;
-
-		return pairOut;
-	}
-
-	public Pair constructNfaForSingleCharacter(char c) {
-
-		Pair pairOut = new Pair();
-		pairOut.startNode = nfaManager.newNfa();
-		pairOut.endNode = nfaManager.newNfa();
-		pairOut.startNode.next = pairOut.endNode;
-		pairOut.startNode.setEdge(c);
-
-		return pairOut;
-	}
-
-	public Pair constructNfaForOR(Pair left, Pair right) {
-		Pair pair = new Pair();
-		pair.startNode = nfaManager.newNfa();
-		pair.endNode = nfaManager.newNfa();
-
-		pair.startNode.next = left.startNode;
-		pair.startNode.next2 = right.startNode;
-
-		left.endNode.next = pair.endNode;
-		right.endNode.next = pair.endNode;
-
-		return pair;
-	}
-
-	public Pair constructNfaForConnector(Pair left, Pair right) {
-		Pair pairOut = new Pair();
-		pairOut.startNode = left.startNode;
-		pairOut.endNode = right.endNode;
-
-		left.endNode.next = right.startNode;
-
-		return pairOut;
-	}
-}
\ No newline at end of file
+import java.util.BitSet;
+
+//import simple.Pair;
+
+public class NfaConstructor {
+	private NfaManager nfaManager = null;
+
+	public NfaConstructor() {
+		this(new NfaManager());
+	}
+
+	public NfaConstructor(NfaManager nfaManager) {
+		this.nfaManager = nfaManager;
+	}
+
+	public NfaManager getManager() {
+		return nfaManager;
+	}
+
+	public Pair constructStarClosure(Pair pairIn) {
+		Pair pairOut = new Pair();
+		pairOut.startNode = nfaManager.newNfa();
+		pairOut.endNode = nfaManager.newNfa();
+
+		pairOut.startNode.setNext(pairIn.startNode);
+		pairIn.endNode.setNext(pairOut.endNode);
+
+		pairOut.startNode.setNext2(pairOut.endNode);
+		pairIn.endNode.setNext2(pairIn.startNode);
+
+		pairIn.startNode = pairOut.startNode;
+		pairIn.endNode = pairOut.endNode;
+
+		return pairOut;
+	}
+
+	public Pair constructPlusClosure(Pair pairIn) {
+		Pair pairOut = new Pair();
+
+		pairOut.startNode = nfaManager.newNfa();
+		pairOut.endNode = nfaManager.newNfa();
+
+		pairOut.startNode.setNext(pairIn.startNode);
+		pairIn.endNode.setNext(pairOut.endNode);
+
+		pairIn.endNode.setNext2(pairOut.startNode);
+
+		pairIn.startNode = pairOut.startNode;
+		pairIn.endNode = pairOut.endNode;
+
+		return pairOut;
+	}
+
+	public Pair constructNfaForSingleCharacter(char c) {
+
+		Pair pairOut = new Pair();
+		pairOut.startNode = nfaManager.newNfa();
+		pairOut.endNode = nfaManager.newNfa();
+		pairOut.startNode.setNext(pairOut.endNode);
+		pairOut.startNode.setEdge(c);
+
+		return pairOut;
+	}
+
+	public Pair constructNfaForCharClass(BitSet set) {
+
+		Pair pairOut = new Pair();
+		pairOut.startNode = nfaManager.newNfa();
+		pairOut.endNode = nfaManager.newNfa();
+		pairOut.startNode.setNext(pairOut.endNode);
+		pairOut.startNode.setEdge(Cell.CCL);
+		pairOut.startNode.setCharClass(nfaManager.addCharSet(set));
+
+		return pairOut;
+	}
+
+	public Pair constructNfaForOR(Pair left, Pair right) {
+		Pair pair = new Pair();
+		pair.startNode = nfaManager.newNfa();
+		pair.endNode = nfaManager.newNfa();
+
+		pair.startNode.setNext(left.startNode);
+		pair.startNode.setNext2(right.startNode);
+
+		left.endNode.setNext(pair.endNode);
+		right.endNode.setNext(pair.endNode);
+
+		return pair;
+	}
+
+	public Pair constructNfaForConnector(Pair left, Pair right) {
+		Pair pairOut = new Pair();
+		pairOut.startNode = left.startNode;
+		pairOut.endNode = right.endNode;
+
+		left.endNode.setNext(right.startNode);
+
+		return pairOut;
+	}
+}
@@ -1,46 +1,161 @@
-import java.util.Stack;
-
-//import simple.Cell;
-
-public class NfaManager {
-    private final int NFA_MAX = 256; 
-    private Cell[] nfaStatesArr = null;
-    private Stack<Cell> nfaStack = null;
-    private int nextAlloc = 0; 
-    private int nfaStates = 0; 
-    
-    public NfaManager()  {
-    	nfaStatesArr = new Cell[NFA_MAX];
-    	for (int i = 0; i < NFA_MAX; i++) {
-    		nfaStatesArr[i] = new Cell();
-    	}
-    	
-    	nfaStack = new Stack<Cell>();
-    	
-    }
-    
-    public Cell newNfa()  {
-    	Cell nfa = null;
-    	if (nfaStack.size() > 0) {
-    		nfa = nfaStack.pop();
-    	}
-    	else {
-    		nfa = nfaStatesArr[nextAlloc];
-    		nextAlloc++;
-    	}
-    	
-    	nfa.clearState();
-    	nfa.setState(nfaStates++);
-    	nfa.setEdge(Cell.EPSILON);
-    	
-    	return nfa;
-    }
-    
-    public void discardNfa(Cell nfaDiscarded) {
-    	--nfaStates;
-    	nfaDiscarded.clearState();
-    	nfaStack.push(nfaDiscarded);
-    }
-    
-   
-}
\ No newline at end of file
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+//import simple.Cell;
+
+public class NfaManager {
+    public static final int NONE = -1;
+    private static final int CHUNK = 256;
+    private int[] edge;
+    private int[] next;
+    private int[] next2;
+    private int[] state;
+    private int[] charClass;
+    private List<BitSet> charSets = new ArrayList<>();
+    private Map<BitSet, Integer> charSetIds = new HashMap<>();
+    private int[] freeList;
+    private int freeTop = 0;
+    private int nextAlloc = 0;
+    private int nfaStates = 0;
+
+    public NfaManager()  {
+    	edge = new int[CHUNK];
+    	next = new int[CHUNK];
+    	next2 = new int[CHUNK];
+    	state = new int[CHUNK];
+    	charClass = new int[CHUNK];
+    	freeList = new int[CHUNK];
+    }
+
+    public Cell newNfa()  {
+    	return cell(allocate());
+    }
+
+    public int allocate() {
+    	int nfa;
+    	if (freeTop > 0) {
+    		nfa = freeList[--freeTop];
+    	}
+    	else {
+    		if (nextAlloc == edge.length) {
+    			grow();
+    		}
+    		nfa = nextAlloc++;
+    	}
+
+    	clearState(nfa);
+    	state[nfa] = nfaStates++;
+    	edge[nfa] = Cell.EPSILON;
+
+    	return nfa;
+    }
+
+    public void discardNfa(Cell nfaDiscarded) {
+    	discard(nfaDiscarded.getIndex());
+    }
+
+    public void discard(int nfa) {
+    	--nfaStates;
+    	clearState(nfa);
+    	if (freeTop == freeList.length) {
+    		freeList = Arrays.copyOf(freeList, freeList.length + CHUNK);
+    	}
+    	freeList[freeTop++] = nfa;
+    }
+
+    // Forgets every allocated state but keeps the backing arrays for the next compilation.
+    public void reset() {
+    	nextAlloc = 0;
+    	nfaStates = 0;
+    	freeTop = 0;
+    	charSets.clear();
+    	charSetIds.clear();
+    }
+
+    public Cell cell(int nfa) {
+    	return nfa == NONE ? null : new Cell(this, nfa);
+    }
+
+    public int allocated() {
+    	return nextAlloc;
+    }
+
+    public int getEdge(int nfa) {
+    	return edge[nfa];
+    }
+
+    public void setEdge(int nfa, int type) {
+    	edge[nfa] = type;
+    }
+
+    public int getNext(int nfa) {
+    	return next[nfa];
+    }
+
+    public void setNext(int nfa, int target) {
+    	next[nfa] = target;
+    }
+
+    public int getNext2(int nfa) {
+    	return next2[nfa];
+    }
+
+    public void setNext2(int nfa, int target) {
+    	next2[nfa] = target;
+    }
+
+    public int getState(int nfa) {
+    	return state[nfa];
+    }
+
+    public void setState(int nfa, int num) {
+    	state[nfa] = num;
+    }
+
+    public int getCharClass(int nfa) {
+    	return charClass[nfa];
+    }
+
+    public void setCharClass(int nfa, int id) {
+    	charClass[nfa] = id;
+    }
+
+    // Interns a character set so that equal classes share one id.
+    public int addCharSet(BitSet set) {
+    	Integer id = charSetIds.get(set);
+    	if (id == null) {
+    		id = charSets.size();
+    		BitSet copy = (BitSet) set.clone();
+    		charSets.add(copy);
+    		charSetIds.put(copy, id);
+    	}
+    	return id;
+    }
+
+    public BitSet getCharSet(int id) {
+    	return charSets.get(id);
+    }
+
+    public int charSetCount() {
+    	return charSets.size();
+    }
+
+    private void clearState(int nfa) {
+    	next[nfa] = next2[nfa] = NONE;
+    	state[nfa] = -1;
+    	charClass[nfa] = NONE;
+    }
+
+    private void grow() {
+    	int capacity = edge.length + Math.max(CHUNK, edge.length >> 1);
+    	edge = Arrays.copyOf(edge, capacity);
+    	next = Arrays.copyOf(next, capacity);
+    	next2 = Arrays.copyOf(next2, capacity);
+    	state = Arrays.copyOf(state, capacity);
+    	charClass = Arrays.copyOf(charClass, capacity);
+    }
+}
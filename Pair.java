@@ -1,4 +1,4 @@
-public class Pair {
-    public Cell startNode;
-    public Cell endNode;
-}
\ No newline at end of file
+public class Pair {
+    public Cell startNode;
+    public Cell endNode;
+}
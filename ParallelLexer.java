@@ -0,0 +1,204 @@
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Lexes one large source on several threads. The text is cut into chunks just after newlines and
+ * every chunk is lexed speculatively, as if no token crossed into it. A sequential merge then walks
+ * the chunks in order: where the previous token really ended at the cut, the chunk is taken as is;
+ * where a comment, string or whitespace ran across it, the merge re-lexes from the true position
+ * only until it lands on a token start the chunk also found, and takes the rest of the chunk from
+ * there. Line numbers are shifted by a prefix sum of the chunks' newline counts. The result, errors
+ * included, is the same as {@link LexicalAnalyzer#tokenize(CharSequence, TokenBuffer)}.
+ */
+class ParallelLexer {
+    // Below this many characters per chunk, splitting costs more than it saves.
+    private static final int MIN_CHUNK = 64 * 1024;
+
+    public static TokenBuffer tokenize(CharSequence source, TokenBuffer out, ForkJoinPool pool) throws SyntaxError {
+        int chunks = Math.min(pool.getParallelism() * 4, source.length() / MIN_CHUNK);
+        return tokenize(source, out, pool, chunks);
+    }
+
+    public static TokenBuffer tokenize(CharSequence source, TokenBuffer out, ForkJoinPool pool, int chunks) throws SyntaxError {
+        int[] cut = cuts(source, chunks);
+        if (cut.length <= 2) {
+            return new LexicalAnalyzer().tokenize(source, out);
+        }
+
+        Chunk[] chunk = new Chunk[cut.length - 1];
+        List<Callable<Chunk>> tasks = new ArrayList<>();
+        for (int j = 0; j < chunk.length; j++) {
+            chunk[j] = new Chunk(source, cut[j], cut[j + 1]);
+            tasks.add(chunk[j]);
+        }
+        for (Future<Chunk> done : pool.invokeAll(tasks)) {
+            try {
+                done.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("interrupted while lexing", e);
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("lexing a chunk failed", e.getCause());
+            }
+        }
+
+        out.reset(source);
+        Scan scan = new Scan(0, 1, 1);
+        int lineOffset = 0;
+        for (Chunk c : chunk) {
+            if (scan.pos < c.to) {
+                // re-lex until scan is at a token start the chunk also found
+                int k = 0;
+                while (scan.pos < c.to) {
+                    while (k < c.tokens.size() && c.tokens.start(k) < scan.pos) {
+                        k++;
+                    }
+                    if (scan.pos == c.from || k < c.tokens.size() && c.tokens.start(k) == scan.pos || scan.pos == c.scan.pos) {
+                        break;
+                    }
+                    if (!scan.step(source, out)) {
+                        scan.fail(source);
+                    }
+                }
+                if (scan.pos < c.to) {
+                    out.append(c.tokens, k, lineOffset);
+                    if (c.scan.failed) {
+                        c.scan.line += lineOffset;
+                        c.scan.fail(source);
+                    }
+                    scan = new Scan(c.scan.pos, c.scan.line + lineOffset, c.scan.column);
+                }
+            }
+            lineOffset += c.newlines;
+        }
+        out.add(TokenType.EOF, source.length(), 0, scan.line, scan.column);
+        return out;
+    }
+
+    // Chunk boundaries: 0, then positions just after a newline, then source.length().
+    private static int[] cuts(CharSequence source, int chunks) {
+        int length = source.length();
+        List<Integer> cuts = new ArrayList<>();
+        cuts.add(0);
+        for (int j = 1; j < chunks; j++) {
+            int at = Math.max((int) ((long) length * j / chunks), cuts.get(cuts.size() - 1));
+            while (at < length && source.charAt(at) != '\n') {
+                at++;
+            }
+            if (at + 1 < length && at + 1 > cuts.get(cuts.size() - 1)) {
+                cuts.add(at + 1);
+            }
+        }
+        cuts.add(length);
+        return cuts.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    // Lexer position; step() lexes one token, or records the failed match and returns false.
+    private static class Scan {
+        int pos;
+        int line;
+        int column;
+        boolean failed;
+        long error;
+
+        Scan(int pos, int line, int column) {
+            this.pos = pos;
+            this.line = line;
+            this.column = column;
+        }
+
+        boolean step(CharSequence source, TokenBuffer out) {
+            long match = LexicalAnalyzer.TABLE.match(source, pos, source.length());
+            int end = ScannerTable.end(match);
+            TokenType type;
+            try {
+                type = LexicalAnalyzer.typeOf(LexicalAnalyzer.ruleOf(match, source, pos, line, column), source, pos, end);
+            } catch (SyntaxError e) {
+                failed = true;
+                error = match;
+                return false;
+            }
+            if (type != null) {
+                out.add(type, pos, end - pos, line, column);
+            }
+            for (; pos < end; pos++) {
+                if (source.charAt(pos) == '\n') {
+                    line++;
+                    column = 1;
+                } else {
+                    column++;
+                }
+            }
+            return true;
+        }
+
+        // Throws the SyntaxError of the match step() failed on.
+        void fail(CharSequence source) throws SyntaxError {
+            LexicalAnalyzer.ruleOf(error, source, pos, line, column);
+            throw new IllegalStateException("match at " + pos + " is valid");
+        }
+    }
+
+    // Tokens of [from, to) lexed as if a token started at from; lines are counted from 1 at from.
+    private static class Chunk implements Callable<Chunk> {
+        final CharSequence source;
+        final int from;
+        final int to;
+        final TokenBuffer tokens = new TokenBuffer();
+        Scan scan;
+        int newlines;
+
+        Chunk(CharSequence source, int from, int to) {
+            this.source = source;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        public Chunk call() {
+            for (int i = from; i < to; i++) {
+                if (source.charAt(i) == '\n') {
+                    newlines++;
+                }
+            }
+            tokens.reset(source);
+            scan = new Scan(from, 1, 1);
+            while (scan.pos < to && scan.step(source, tokens)) {
+            }
+            return this;
+        }
+    }
+
+    // Differential check: lexes each file sequentially and in parallel with several chunk counts.
+    public static void main(String[] args) throws IOException {
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        for (String arg : args) {
+            String source = Files.readString(Paths.get(arg));
+            String expected = describe(source, -1, pool);
+            for (int chunks : new int[] { 2, 3, 8, 64, 1000 }) {
+                String actual = describe(source, chunks, pool);
+                System.out.println(arg + " (" + chunks + " chunks): " + (actual.equals(expected) ? "ok" : "MISMATCH"));
+            }
+        }
+    }
+
+    // Every token with its position and symbol, or the error; sequential when chunks is negative.
+    static String describe(String source, int chunks, ForkJoinPool pool) {
+        try {
+            TokenBuffer tokens = chunks < 0
+                ? new LexicalAnalyzer().tokenize(source, new TokenBuffer())
+                : tokenize(source, new TokenBuffer(), pool, chunks);
+            StringBuilder sb = new StringBuilder();
+            while (tokens.next()) {
+                sb.append(tokens.type()).append(' ').append(tokens.start()).append(' ').append(tokens.length())
+                    .append(' ').append(tokens.line()).append(':').append(tokens.column())
+                    .append(' ').append(tokens.symbol()).append('\n');
+            }
+            return sb.toString();
+        } catch (SyntaxError e) {
+            return e.getMessage();
+        }
+    }
+}
@@ -0,0 +1,209 @@
+import java.util.BitSet;
+
+/**
+ * Matches by simulating the Thompson NFA directly, in the style of Pike's VM: the states the NFA
+ * can be in are kept in a list, and each input character moves the whole list one step. Every state
+ * is in a list at most once, so a match costs O(input length * NFA states) with nothing to build
+ * beyond the NFA itself, which suits patterns that are used once. The lists are sparse sets, so
+ * clearing one between characters takes constant time. The lists are reused across calls, so an
+ * instance must not be shared between threads.
+ */
+public class PikeVM implements MatchEngine {
+	public static final int NONE = -1;
+
+	private final IndexedNfa nfa;
+	private final int[] endRule;
+	private final int start;
+	private final BitSet first; // characters that can begin a match
+	private SparseSet current;
+	private SparseSet next;
+	private final int[] stack;
+
+	public PikeVM(String re) {
+		this(new NFA(re).build(new NfaManager()), null);
+	}
+
+	// endRule as for DFA(Pair, int[]): the rule accepted by each NFA state, or null for a single pattern.
+	public PikeVM(Pair pair, int[] endRule) {
+		this.nfa = new IndexedNfa(pair);
+		this.endRule = endRule;
+		this.start = nfa.getStart();
+		this.first = new BitSet();
+		BitSet closure = nfa.closure(start);
+		for (int s = closure.nextSetBit(0); s >= 0; s = closure.nextSetBit(s + 1)) {
+			if (nfa.getEdge(s) >= 0)
+				first.set(nfa.getEdge(s));
+			else if (nfa.getEdge(s) == Cell.CCL)
+				first.or(nfa.getCharSet(nfa.getCharClass(s)));
+		}
+		int states = nfa.size();
+		this.current = new SparseSet(states);
+		this.next = new SparseSet(states);
+		this.stack = new int[states];
+	}
+
+	@Override
+	public long match(CharSequence src, int pos, int end) {
+		current.clear();
+		add(current, start, pos);
+		int lastRule = NONE;
+		int lastEnd = pos;
+		for (int i = pos; i < end && current.size > 0; i++) {
+			int rule = step(src.charAt(i), i + 1);
+			if (rule != NONE) {
+				lastRule = rule;
+				lastEnd = i + 1;
+			}
+		}
+		return lastRule == NONE ? NONE : ((long) lastRule << 32) | lastEnd;
+	}
+
+	@Override
+	public boolean matches(CharSequence src) {
+		current.clear();
+		int rule = add(current, start, 0);
+		for (int i = 0; i < src.length() && current.size > 0; i++) {
+			rule = step(src.charAt(i), i + 1);
+		}
+		return rule != NONE;
+	}
+
+	/**
+	 * Leftmost-longest non-empty match in src[pos, end): the earliest position where some rule
+	 * matches, and the longest match from there. Returns NONE or the start and end packed into one
+	 * long; see {@link #start(long)} and {@link ScannerTable#end(long)}. Until a match is found, a
+	 * thread is started at every position whose character can begin one, and input that no
+	 * thread is alive for is skipped. A thread that reaches a state another thread is already in
+	 * is dropped. The list stays ordered by start, so the thread that survives is the one that
+	 * started first.
+	 */
+	public long find(CharSequence src, int pos, int end) {
+		current.clear();
+		int foundStart = NONE;
+		int foundEnd = NONE;
+		for (int i = pos; i < end; i++) {
+			if (current.size == 0) {
+				if (foundStart != NONE)
+					break;
+				while (i < end && !first.get(src.charAt(i)))
+					i++;
+				if (i == end)
+					break;
+			}
+			char c = src.charAt(i);
+			if (foundStart == NONE && first.get(c))
+				add(current, start, i);
+			next.clear();
+			for (int k = 0; k < current.size; k++) {
+				int s = current.dense[k];
+				int from = current.from[s];
+				if (foundStart != NONE && from > foundStart)
+					break;
+				if (nfa.matches(s, c) && nfa.getNext(s) != IndexedNfa.NONE && add(next, nfa.getNext(s), from) != NONE) {
+					foundStart = from;
+					foundEnd = i + 1;
+				}
+			}
+			swap();
+		}
+		return foundStart == NONE ? NONE : ((long) foundStart << 32) | foundEnd;
+	}
+
+	// Start of a match returned by find.
+	public static int start(long found) {
+		return (int) (found >>> 32);
+	}
+
+	// Moves every thread in current over c into next, then swaps; the rule accepted after c, or NONE.
+	private int step(char c, int at) {
+		next.clear();
+		int rule = NONE;
+		for (int k = 0; k < current.size; k++) {
+			int s = current.dense[k];
+			if (nfa.matches(s, c) && nfa.getNext(s) != IndexedNfa.NONE) {
+				int r = add(next, nfa.getNext(s), at);
+				if (r != NONE && (rule == NONE || r < rule))
+					rule = r;
+			}
+		}
+		swap();
+		return rule;
+	}
+
+	private void swap() {
+		SparseSet list = current;
+		current = next;
+		next = list;
+	}
+
+	/**
+	 * Adds s and the states its epsilon edges reach to list, as threads started at position at,
+	 * skipping states already there. Returns the rule accepted by the states added (for several
+	 * rules the smallest number, as in DFA), or NONE.
+	 */
+	private int add(SparseSet list, int s, int at) {
+		int rule = NONE;
+		int top = 0;
+		if (list.add(s))
+			stack[top++] = s;
+		while (top > 0) {
+			int u = stack[--top];
+			list.from[u] = at;
+			int r = acceptOf(u);
+			if (r != NONE && (rule == NONE || r < rule))
+				rule = r;
+			if (nfa.getEdge(u) != Cell.EPSILON)
+				continue;
+			// next2 is pushed first so that next is expanded first, as in a depth-first walk
+			int n2 = nfa.getNext2(u);
+			if (n2 != IndexedNfa.NONE && list.add(n2))
+				stack[top++] = n2;
+			int n = nfa.getNext(u);
+			if (n != IndexedNfa.NONE && list.add(n))
+				stack[top++] = n;
+		}
+		return rule;
+	}
+
+	private int acceptOf(int s) {
+		if (endRule == null)
+			return s == nfa.getEnd() ? 0 : NONE;
+		return s < endRule.length ? endRule[s] : NONE;
+	}
+
+	/**
+	 * Set of states with constant-time add, membership test and clear (Briggs and Torczon): dense
+	 * lists the members in the order they were added and sparse[s] is where s sits in dense, which
+	 * only counts if dense agrees. Clearing resets the size and leaves the arrays as they are.
+	 */
+	private static final class SparseSet {
+		final int[] dense;
+		final int[] sparse;
+		final int[] from; // input position where the thread in each state started
+		int size;
+
+		SparseSet(int capacity) {
+			dense = new int[capacity];
+			sparse = new int[capacity];
+			from = new int[capacity];
+		}
+
+		boolean contains(int s) {
+			int i = sparse[s];
+			return i < size && dense[i] == s;
+		}
+
+		// Adds s; false if it was already there.
+		boolean add(int s) {
+			if (contains(s))
+				return false;
+			sparse[s] = size;
+			dense[size++] = s;
+			return true;
+		}
+
+		void clear() {
+			size = 0;
+		}
+	}
+}
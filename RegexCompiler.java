@@ -0,0 +1,112 @@
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Compiles regular expressions to minimized {@link ScannerTable}s and keeps the most recently used
+ * ones, keyed by {@link NFA#normalize(String)}, so a pattern that is compiled again is a map lookup.
+ * Tables are never modified after they are built, so one cached table can be shared by any number
+ * of threads. The cache holds at most capacity tables and drops the least recently used one to make
+ * room; hit, miss and eviction counts are kept for sizing it. Patterns are normalized once per
+ * spelling: the normalized key of each spelling seen is remembered, up to a few times capacity.
+ */
+public class RegexCompiler {
+	private final int capacity;
+	private final LinkedHashMap<String, ScannerTable> cache;
+	private final Map<String, String> keys = new HashMap<>(); // pattern as written -> normalized key
+	private long hits;
+	private long misses;
+	private long evictions;
+
+	public RegexCompiler(int capacity) {
+		if (capacity <= 0) {
+			throw new IllegalArgumentException("capacity must be positive: " + capacity);
+		}
+		this.capacity = capacity;
+		this.cache = new LinkedHashMap<String, ScannerTable>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, ScannerTable> eldest) {
+				if (size() > RegexCompiler.this.capacity) {
+					evictions++;
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+
+	/**
+	 * The table for pattern, compiled on a miss. Compiling happens outside the lock, so a slow
+	 * pattern does not hold up lookups; if two threads miss on the same pattern at once, both
+	 * compile it and the first table stored is the one returned to both.
+	 */
+	public ScannerTable compile(String pattern) {
+		String key;
+		synchronized (this) {
+			key = keys.get(pattern);
+			ScannerTable table = key != null ? cache.get(key) : null;
+			if (table != null) {
+				hits++;
+				return table;
+			}
+		}
+		if (key == null) {
+			key = NFA.normalize(pattern);
+		}
+		synchronized (this) {
+			if (keys.size() >= 4 * capacity) {
+				keys.clear();
+			}
+			keys.put(pattern, key);
+			ScannerTable table = cache.get(key);
+			if (table != null) {
+				hits++;
+				return table;
+			}
+			misses++;
+		}
+		ScannerGenerator generator = new ScannerGenerator();
+		generator.addRule(key, 0);
+		ScannerTable table = generator.generate();
+		synchronized (this) {
+			ScannerTable raced = cache.putIfAbsent(key, table);
+			return raced != null ? raced : table;
+		}
+	}
+
+	// Whether the whole of input matches pattern.
+	public boolean matches(String pattern, CharSequence input) {
+		return compile(pattern).matches(input);
+	}
+
+	public int getCapacity() {
+		return capacity;
+	}
+
+	public synchronized int size() {
+		return cache.size();
+	}
+
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	public synchronized long getEvictions() {
+		return evictions;
+	}
+
+	public synchronized void clear() {
+		cache.clear();
+		keys.clear();
+	}
+
+	@Override
+	public synchronized String toString() {
+		return String.format("RegexCompiler[%d/%d tables, %d hits, %d misses, %d evictions]", cache.size(), capacity, hits,
+			misses, evictions);
+	}
+}
@@ -0,0 +1,117 @@
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+//import simple.Cell;
+//import simple.Pair;
+
+/**
+ * Builds a single scanner automaton out of prioritised regular expressions: every rule is
+ * compiled into one shared NFA arena, the fragments are unioned, determinized and minimized,
+ * and the result is emitted as a dense {@link ScannerTable}.
+ */
+public class ScannerGenerator {
+	private List<String> patterns = new ArrayList<>();
+	private List<Integer> priorities = new ArrayList<>();
+
+	// Returns the rule number. Between matches of equal length the higher priority wins, then the earlier rule.
+	public int addRule(String pattern, int priority) {
+		patterns.add(pattern);
+		priorities.add(priority);
+		return patterns.size() - 1;
+	}
+
+	/**
+	 * The table saved in cache if it was generated from these same rules, otherwise a newly generated
+	 * one, which is then saved to cache for the next start. A cache that cannot be read or written
+	 * only costs the time to generate the table.
+	 */
+	public ScannerTable generate(Path cache) {
+		long fingerprint = fingerprint();
+		try {
+			ScannerTable table = ScannerTable.load(cache, fingerprint, patterns.size());
+			if (table != null) {
+				return table;
+			}
+		}
+		catch (IOException e) {
+			// unreadable cache: generate the table instead
+		}
+		ScannerTable table = generate();
+		try {
+			table.save(cache, fingerprint);
+		}
+		catch (IOException e) {
+			// unwritable cache: the table is still good for this run
+		}
+		return table;
+	}
+
+	// 64-bit FNV-1a over the table format version and every rule's pattern and priority.
+	public long fingerprint() {
+		long hash = 0xcbf29ce484222325L;
+		hash = (hash ^ ScannerTable.VERSION) * 0x100000001b3L;
+		for (int i = 0; i < patterns.size(); i++) {
+			String pattern = patterns.get(i);
+			for (int j = 0; j < pattern.length(); j++) {
+				hash = (hash ^ pattern.charAt(j)) * 0x100000001b3L;
+			}
+			hash = (hash ^ 0x10000) * 0x100000001b3L; // end of pattern, outside the char range
+			hash = (hash ^ priorities.get(i)) * 0x100000001b3L;
+		}
+		return hash;
+	}
+
+	public ScannerTable generate() {
+		int n = patterns.size();
+		if (n == 0) {
+			throw new IllegalStateException("no scanner rules");
+		}
+		Integer[] order = new Integer[n];
+		for (int i = 0; i < n; i++) {
+			order[i] = i;
+		}
+		Arrays.sort(order, Comparator.comparing((Integer i) -> -priorities.get(i)).thenComparing(i -> i));
+
+		NfaManager manager = new NfaManager();
+		Pair[] fragments = new Pair[n];
+		for (int k = 0; k < n; k++) {
+			fragments[k] = new NFA(patterns.get(order[k])).build(manager);
+		}
+
+		Cell start = fragments[n - 1].startNode;
+		for (int k = n - 2; k >= 0; k--) {
+			Cell fork = manager.newNfa();
+			fork.setNext(fragments[k].startNode);
+			fork.setNext2(start);
+			start = fork;
+		}
+		Pair union = new Pair();
+		union.startNode = start;
+		int[] endRule = new int[manager.allocated()];
+		Arrays.fill(endRule, DFA.NONE);
+		for (int k = 0; k < n; k++) {
+			endRule[fragments[k].endNode.getState()] = k;
+		}
+
+		DFA dfa = new DFA(union, endRule);
+		dfa.createDFA();
+		DFA min = dfa.minimize();
+
+		int classes = min.getClasses().count();
+		int[] classOf = min.getClasses().toArray();
+		int states = min.getStateCount();
+		int[] table = new int[states * classes];
+		int[] accept = new int[states];
+		for (int s = 0; s < states; s++) {
+			for (int c = 0; c < classes; c++) {
+				table[s * classes + c] = min.getTransition(s, c);
+			}
+			accept[s] = min.getAccept(s) == DFA.NONE ? ScannerTable.NONE : order[min.getAccept(s)];
+		}
+		return new ScannerTable(classes, classOf, table, accept);
+	}
+}
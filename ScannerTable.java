@@ -0,0 +1,309 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.file.*;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+/**
+ * Dense transition table emitted by {@link ScannerGenerator}: {@code table[state * classes + classOf[c]]}
+ * is the next state (or NONE), state 0 is the start state and {@code accept[state]} is the rule
+ * accepted there (or NONE). Characters are first mapped to their equivalence class, so the table
+ * has one column per class rather than one per character.
+ *
+ * <p>A table can be saved to a small binary file and read back in later without rebuilding it.
+ * The file holds a magic number, the format VERSION, the fingerprint of the rules it was built from,
+ * the class map as runs of characters, the transition and accept arrays, and a CRC-32 of all of it.
+ */
+public class ScannerTable implements MatchEngine {
+	public static final int NONE = -1;
+	// Returned instead of a match when the scan ran into the end of a buffer that is not the end of input.
+	public static final long MORE = -2;
+
+	// Bump when the file layout or the way tables are generated changes, so older files are rebuilt.
+	public static final int VERSION = 1;
+	private static final int MAGIC = 0x53434E54; // "SCNT"
+	private static final int HEADER = 4 + 4 + 8 + 4 + 4 + 4;
+	private static final int CHARS = Character.MAX_VALUE + 1;
+
+	private final int classes;
+	private final short[] classOf;
+	private final int[] table;
+	private final int[] accept;
+
+	public ScannerTable(int classes, int[] classOf, int[] table, int[] accept) {
+		this(classes, shorts(classes, classOf), table, accept);
+	}
+
+	private ScannerTable(int classes, short[] classOf, int[] table, int[] accept) {
+		this.classes = classes;
+		this.classOf = classOf;
+		this.table = table;
+		this.accept = accept;
+	}
+
+	private static short[] shorts(int classes, int[] classOf) {
+		if (classes > Short.MAX_VALUE) {
+			throw new IllegalArgumentException("too many character classes: " + classes);
+		}
+		short[] shorts = new short[classOf.length];
+		for (int c = 0; c < classOf.length; c++) {
+			shorts[c] = (short) classOf[c];
+		}
+		return shorts;
+	}
+
+	public int getStateCount() {
+		return accept.length;
+	}
+
+	public int getClassCount() {
+		return classes;
+	}
+
+	/**
+	 * How many characters past the end of a match the scan for it can read: one more than the
+	 * longest run of non-accepting states that can follow an accepting one, or Integer.MAX_VALUE if
+	 * such a run can loop. A match depends on no text beyond its end plus this many characters.
+	 */
+	public int lookahead() {
+		int states = accept.length;
+		int[] run = new int[states]; // longest run of non-accepting states from each one; 0 unknown, -1 on the stack
+		int[] stack = new int[states];
+		int[] next = new int[states]; // next column to follow from each stacked state
+		int longest = 0;
+		for (int s = 0; s < states; s++) {
+			if (accept[s] == NONE)
+				continue;
+			for (int c = 0; c < classes; c++) {
+				int root = table[s * classes + c];
+				if (root < 0 || accept[root] != NONE)
+					continue;
+				int top = 0;
+				if (run[root] == 0) {
+					stack[top] = root;
+					next[top++] = 0;
+					run[root] = -1;
+				}
+				while (top > 0) {
+					int u = stack[top - 1];
+					if (next[top - 1] < classes) {
+						int t = table[u * classes + next[top - 1]++];
+						if (t < 0 || accept[t] != NONE)
+							continue;
+						if (run[t] < 0)
+							return Integer.MAX_VALUE;
+						if (run[t] == 0) {
+							run[t] = -1;
+							stack[top] = t;
+							next[top++] = 0;
+						}
+					}
+					else {
+						int best = 0;
+						for (int d = 0; d < classes; d++) {
+							int t = table[u * classes + d];
+							if (t >= 0 && accept[t] == NONE)
+								best = Math.max(best, run[t]);
+						}
+						run[u] = best + 1;
+						top--;
+					}
+				}
+				longest = Math.max(longest, run[root]);
+			}
+		}
+		return longest + 1;
+	}
+
+	/**
+	 * Longest match starting at {@code pos}. Returns NONE when no rule matches a non-empty prefix,
+	 * otherwise the rule and end offset packed into one long; see {@link #rule(long)} and {@link #end(long)}.
+	 */
+	@Override
+	public long match(CharSequence src, int pos, int end) {
+		return match(src, pos, end, true);
+	}
+
+	/**
+	 * Like {@link #match(CharSequence, int, int)} over a window of a longer input. Unless
+	 * {@code endOfInput} is set, a scan that is still alive at {@code end} returns MORE, since
+	 * the token might continue past the window.
+	 */
+	public long match(CharSequence src, int pos, int end, boolean endOfInput) {
+		short[] classOf = this.classOf;
+		int[] table = this.table;
+		int[] accept = this.accept;
+		int classes = this.classes;
+		int state = 0;
+		int lastRule = NONE;
+		int lastEnd = pos;
+		for (int i = pos; i < end; i++) {
+			int column = classOf[src.charAt(i)];
+			if (column < 0)
+				break;
+			state = table[state * classes + column];
+			if (state < 0)
+				break;
+			if (accept[state] != NONE) {
+				lastRule = accept[state];
+				lastEnd = i + 1;
+			}
+			if (i + 1 == end && !endOfInput)
+				return MORE;
+		}
+		return lastRule == NONE ? NONE : ((long) lastRule << 32) | lastEnd;
+	}
+
+	// match(CharSequence, int, int) over ASCII/UTF-8 bytes, one column per byte.
+	public long match(ByteBuffer src, int pos, int end) {
+		short[] classOf = this.classOf;
+		int[] table = this.table;
+		int[] accept = this.accept;
+		int classes = this.classes;
+		int state = 0;
+		int lastRule = NONE;
+		int lastEnd = pos;
+		for (int i = pos; i < end; i++) {
+			int column = classOf[src.get(i) & 0xff];
+			if (column < 0)
+				break;
+			state = table[state * classes + column];
+			if (state < 0)
+				break;
+			if (accept[state] != NONE) {
+				lastRule = accept[state];
+				lastEnd = i + 1;
+			}
+		}
+		return lastRule == NONE ? NONE : ((long) lastRule << 32) | lastEnd;
+	}
+
+	@Override
+	public boolean matches(CharSequence src) {
+		int state = 0;
+		for (int i = 0; i < src.length(); i++) {
+			int column = classOf[src.charAt(i)];
+			if (column < 0)
+				return false;
+			state = table[state * classes + column];
+			if (state < 0)
+				return false;
+		}
+		return accept[state] != NONE;
+	}
+
+	/**
+	 * Writes the table to file, tagged with the fingerprint of the rules it was generated from. The
+	 * file is written under a temporary name and moved into place, so a reader never sees half of it.
+	 */
+	public void save(Path file, long fingerprint) throws IOException {
+		int runs = 0;
+		for (int c = 0; c < classOf.length; c++) {
+			if (c + 1 == classOf.length || classOf[c + 1] != classOf[c])
+				runs++;
+		}
+		ByteBuffer out = ByteBuffer.allocate(HEADER + runs * 8 + (table.length + accept.length) * 4 + 4);
+		out.putInt(MAGIC).putInt(VERSION).putLong(fingerprint);
+		out.putInt(classes).putInt(accept.length).putInt(runs);
+		for (int c = 0; c < classOf.length; c++) {
+			if (c + 1 == classOf.length || classOf[c + 1] != classOf[c])
+				out.putInt(c).putInt(classOf[c]);
+		}
+		for (int next : table)
+			out.putInt(next);
+		for (int rule : accept)
+			out.putInt(rule);
+		CRC32 crc = new CRC32();
+		crc.update(out.array(), 0, out.position());
+		out.putInt((int) crc.getValue());
+
+		Path dir = file.toAbsolutePath().getParent();
+		Path temp = Files.createTempFile(dir, file.getFileName().toString(), ".tmp");
+		try {
+			Files.write(temp, out.array());
+			Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			Files.deleteIfExists(temp);
+		}
+	}
+
+	/**
+	 * Loads a table written by {@link #save}. Returns null when there is no file, or when it
+	 * is from another format version, was built from rules with another fingerprint, or fails its
+	 * checksum or bounds checks (including an accepted rule outside [0, rules)); the caller should
+	 * then generate the table again.
+	 */
+	public static ScannerTable load(Path file, long fingerprint, int rules) throws IOException {
+		try {
+			// The arrays are copied out of the file in any case, so a plain read is all it takes.
+			ByteBuffer in = ByteBuffer.wrap(Files.readAllBytes(file));
+			int size = in.limit();
+			if (size < HEADER + 4)
+				return null;
+			CRC32 crc = new CRC32();
+			crc.update(in.duplicate().limit(size - 4));
+			if (in.getInt(size - 4) != (int) crc.getValue())
+				return null;
+			if (in.getInt() != MAGIC || in.getInt() != VERSION || in.getLong() != fingerprint)
+				return null;
+			int classes = in.getInt();
+			int states = in.getInt();
+			int runs = in.getInt();
+			if (classes <= 0 || classes > Short.MAX_VALUE || states <= 0 || runs <= 0
+					|| size != HEADER + runs * 8L + (long) states * (classes + 1) * 4 + 4)
+				return null;
+
+			short[] classOf = new short[CHARS];
+			int from = 0;
+			for (int r = 0; r < runs; r++) {
+				int last = in.getInt();
+				int column = in.getInt();
+				if (last < from || last >= CHARS || column < NONE || column >= classes)
+					return null;
+				Arrays.fill(classOf, from, last + 1, (short) column);
+				from = last + 1;
+			}
+			if (from != CHARS)
+				return null;
+			IntBuffer ints = in.asIntBuffer();
+			int[] table = new int[states * classes];
+			int[] accept = new int[states];
+			ints.get(table).get(accept);
+			for (int next : table) {
+				if (next < NONE || next >= states)
+					return null;
+			}
+			for (int rule : accept) {
+				if (rule < NONE || rule >= rules)
+					return null;
+			}
+			return new ScannerTable(classes, classOf, table, accept);
+		}
+		catch (NoSuchFileException e) {
+			return null;
+		}
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (!(o instanceof ScannerTable))
+			return false;
+		ScannerTable other = (ScannerTable) o;
+		return classes == other.classes && Arrays.equals(classOf, other.classOf) && Arrays.equals(table, other.table)
+				&& Arrays.equals(accept, other.accept);
+	}
+
+	@Override
+	public int hashCode() {
+		return 31 * (31 * Arrays.hashCode(classOf) + Arrays.hashCode(table)) + Arrays.hashCode(accept);
+	}
+
+	public static int rule(long match) {
+		return (int) (match >>> 32);
+	}
+
+	public static int end(long match) {
+		return (int) match;
+	}
+}
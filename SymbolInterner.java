@@ -0,0 +1,142 @@
+import java.util.Arrays;
+
+/**
+ * Maps each distinct identifier spelling to a dense int id (0, 1, 2, ... in order of first
+ * appearance). Spellings are hashed and compared straight from the source range, and stored once
+ * in a shared char pool, so interning a name seen before allocates nothing.
+ */
+class SymbolInterner {
+    public static final int NONE = -1;
+
+    private char[] chars;
+    private int charCount;
+    private int[] offset; // spelling of id is chars[offset[id], offset[id + 1])
+    private int[] hashOf;
+    private int size;
+    private int[] table; // open addressing, holds ids or NONE
+    private String[] names;
+
+    public SymbolInterner() {
+        this(64);
+    }
+
+    // Room for capacity names of 16 characters on average before anything grows.
+    public SymbolInterner(int capacity) {
+        capacity = Math.max(capacity, 1);
+        chars = new char[capacity * 16];
+        offset = new int[capacity + 1];
+        hashOf = new int[capacity];
+        names = new String[capacity];
+        table = new int[Integer.highestOneBit(capacity * 4 - 1)];
+        Arrays.fill(table, NONE);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // Forgets every name, keeping the storage; ids handed out before are no longer valid.
+    public void clear() {
+        Arrays.fill(table, NONE);
+        Arrays.fill(names, 0, size, null);
+        size = 0;
+        charCount = 0;
+    }
+
+    public int intern(CharSequence s) {
+        return intern(s, 0, s.length());
+    }
+
+    public int intern(CharSequence s, int start, int end) {
+        int hash = hash(s, start, end);
+        int mask = table.length - 1;
+        for (int i = hash & mask; ; i = (i + 1) & mask) {
+            int id = table[i];
+            if (id == NONE) {
+                id = add(s, start, end, hash);
+                table[i] = id;
+                if (size * 2 > table.length) {
+                    rehash();
+                }
+                return id;
+            }
+            if (hashOf[id] == hash && equals(id, s, start, end)) {
+                return id;
+            }
+        }
+    }
+
+    // Id of the spelling, or NONE if it has not been interned.
+    public int lookup(CharSequence s, int start, int end) {
+        int hash = hash(s, start, end);
+        int mask = table.length - 1;
+        for (int i = hash & mask; table[i] != NONE; i = (i + 1) & mask) {
+            int id = table[i];
+            if (hashOf[id] == hash && equals(id, s, start, end)) {
+                return id;
+            }
+        }
+        return NONE;
+    }
+
+    public String name(int id) {
+        if (names[id] == null) {
+            names[id] = new String(chars, offset[id], offset[id + 1] - offset[id]);
+        }
+        return names[id];
+    }
+
+    private int add(CharSequence s, int start, int end, int hash) {
+        int length = end - start;
+        if (charCount + length > chars.length) {
+            chars = Arrays.copyOf(chars, Math.max(chars.length * 2, charCount + length));
+        }
+        for (int i = 0; i < length; i++) {
+            chars[charCount + i] = s.charAt(start + i);
+        }
+        if (size + 1 == hashOf.length) {
+            hashOf = Arrays.copyOf(hashOf, hashOf.length * 2);
+            offset = Arrays.copyOf(offset, hashOf.length + 1);
+            names = Arrays.copyOf(names, hashOf.length);
+        }
+        offset[size] = charCount;
+        charCount += length;
+        offset[size + 1] = charCount;
+        hashOf[size] = hash;
+        return size++;
+    }
+
+    private void rehash() {
+        table = new int[table.length * 2];
+        Arrays.fill(table, NONE);
+        int mask = table.length - 1;
+        for (int id = 0; id < size; id++) {
+            int i = hashOf[id] & mask;
+            while (table[i] != NONE) {
+                i = (i + 1) & mask;
+            }
+            table[i] = id;
+        }
+    }
+
+    private boolean equals(int id, CharSequence s, int start, int end) {
+        int from = offset[id];
+        if (offset[id + 1] - from != end - start) {
+            return false;
+        }
+        for (int i = start; i < end; i++) {
+            if (chars[from++] != s.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int hash(CharSequence s, int start, int end) {
+        int h = 0;
+        for (int i = start; i < end; i++) {
+            h = 31 * h + s.charAt(i);
+        }
+        return h ^ (h >>> 16);
+    }
+}
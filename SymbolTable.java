@@ -0,0 +1,207 @@
+import java.io.PrintStream;
+import java.util.*;
+
+/**
+ * Scoped symbol table over interned names. Symbols are kept column-wise in primitive arrays, in
+ * declaration order, and stay listed after their scope closes. Visibility is a chain per name:
+ * {@code head[name]} is the innermost visible symbol and {@code shadowed[s]} the one it hides, so
+ * lookup is two array reads. The symbols declared in open scopes are also on an undo stack, and
+ * leaving a scope pops its own and restores the heads they replaced, so each declaration is undone
+ * once whatever the nesting. The table copies the names and values it needs out of the source
+ * into its own interner and buffer, so it does not keep the source or the lexer's names alive.
+ */
+class SymbolTable {
+    public static final int NONE = -1;
+
+    public static final byte VARIABLE = 0;
+    public static final byte PARAMETER = 1;
+    public static final byte FUNCTION = 2;
+    public static final byte CONSTANT = 3;
+
+    private final SymbolInterner names = new SymbolInterner(8); // this table's names; ids index head
+    private final StringBuilder values = new StringBuilder(); // value text, copied out of the source
+    private final List<String> types = new ArrayList<>();
+
+    private int[] name = new int[16];
+    private byte[] kind = new byte[16];
+    private byte[] type = new byte[16];
+    private int[] depth = new int[16];
+    private int[] shadowed = new int[16];
+    private int[] valueStart = new int[16];
+    private int[] valueEnd = new int[16];
+    private int size;
+
+    private int[] head = new int[0];
+    private int[] open = new int[8]; // undo stack: the symbols declared in scopes that are still open
+    private int opened;
+    private int[] scopeStart = new int[8]; // height of the undo stack when each open scope was entered
+    private int scopes;
+
+    public int depth() {
+        return scopes;
+    }
+
+    public void enterScope() {
+        if (scopes == scopeStart.length) {
+            scopeStart = Arrays.copyOf(scopeStart, scopes * 2);
+        }
+        scopeStart[scopes++] = opened;
+    }
+
+    public void exitScope() {
+        if (scopes == 0) {
+            throw new IllegalStateException("no open scope");
+        }
+        int from = scopeStart[--scopes];
+        while (opened > from) {
+            int s = open[--opened];
+            head[name[s]] = shadowed[s];
+        }
+    }
+
+    // This table's id for the name source[start, end), which is copied the first time it is seen.
+    public int intern(CharSequence source, int start, int end) {
+        return names.intern(source, start, end);
+    }
+
+    public int declare(CharSequence source, int nameStart, int nameEnd, byte kind, String typeName, int valueStart, int valueEnd) {
+        return declare(intern(source, nameStart, nameEnd), kind, typeName, source, valueStart, valueEnd);
+    }
+
+    /**
+     * Declares the name with this table's id nameId in the current scope, hiding any visible symbol
+     * of the same name. typeName is the declared type (ignored for functions and constants); the
+     * value is source[valueStart, valueEnd), or none when valueStart is NONE, and is copied.
+     */
+    public int declare(int nameId, byte kind, String typeName, CharSequence source, int valueStart, int valueEnd) {
+        if (size == name.length) {
+            grow();
+        }
+        if (nameId >= head.length) {
+            int old = head.length;
+            head = Arrays.copyOf(head, Math.max(nameId + 1, old * 2));
+            Arrays.fill(head, old, head.length, NONE);
+        }
+        int s = size++;
+        this.name[s] = nameId;
+        this.kind[s] = kind;
+        this.type[s] = (byte) typeCode(typeName);
+        this.depth[s] = scopes;
+        this.shadowed[s] = head[nameId];
+        if (valueStart == NONE) {
+            this.valueStart[s] = NONE;
+            this.valueEnd[s] = NONE;
+        } else {
+            this.valueStart[s] = values.length();
+            if (source instanceof ByteText) {
+                values.append(((ByteText) source).text(valueStart, valueEnd));
+            } else {
+                values.append(source, valueStart, valueEnd);
+            }
+            this.valueEnd[s] = values.length();
+        }
+        head[nameId] = s;
+        if (scopes > 0) {
+            if (opened == open.length) {
+                open = Arrays.copyOf(open, opened * 2);
+            }
+            open[opened++] = s;
+        }
+        return s;
+    }
+
+    // Gives back spare capacity once the table is complete; declaring more still works.
+    public void trim() {
+        name = Arrays.copyOf(name, Math.max(size, 1));
+        kind = Arrays.copyOf(kind, name.length);
+        type = Arrays.copyOf(type, name.length);
+        depth = Arrays.copyOf(depth, name.length);
+        shadowed = Arrays.copyOf(shadowed, name.length);
+        valueStart = Arrays.copyOf(valueStart, name.length);
+        valueEnd = Arrays.copyOf(valueEnd, name.length);
+        head = Arrays.copyOf(head, names.size());
+        open = Arrays.copyOf(open, Math.max(opened, 1));
+        values.trimToSize();
+    }
+
+    /**
+     * Innermost visible symbol with the name that has this id in the table, or NONE. The ids are the
+     * table's own (see intern and nameId), not a TokenBuffer's symbol ids.
+     */
+    public int lookup(int nameId) {
+        return nameId >= 0 && nameId < head.length ? head[nameId] : NONE;
+    }
+
+    public int lookup(CharSequence name) {
+        return lookup(names.lookup(name, 0, name.length()));
+    }
+
+    private int typeCode(String typeName) {
+        if (typeName == null) {
+            return NONE;
+        }
+        int code = types.indexOf(typeName);
+        if (code < 0) {
+            code = types.size();
+            types.add(typeName);
+        }
+        return code;
+    }
+
+    private void grow() {
+        int capacity = size * 2;
+        name = Arrays.copyOf(name, capacity);
+        kind = Arrays.copyOf(kind, capacity);
+        type = Arrays.copyOf(type, capacity);
+        depth = Arrays.copyOf(depth, capacity);
+        shadowed = Arrays.copyOf(shadowed, capacity);
+        valueStart = Arrays.copyOf(valueStart, capacity);
+        valueEnd = Arrays.copyOf(valueEnd, capacity);
+    }
+
+    public int size() { return size; }
+    public String name(int s) { return names.name(name[s]); }
+    public int nameId(int s) { return name[s]; }
+    public byte kind(int s) { return kind[s]; }
+    public int depth(int s) { return depth[s]; }
+    // The symbol s hides, or NONE.
+    public int shadowed(int s) { return shadowed[s]; }
+
+    public String type(int s) {
+        switch (kind[s]) {
+            case FUNCTION: return "Function";
+            case CONSTANT: return "Constant";
+            default: return type[s] == NONE ? null : types.get(type[s]);
+        }
+    }
+
+    public String scope(int s) {
+        if (kind[s] == PARAMETER) {
+            return "Parameter";
+        }
+        return depth[s] == 0 ? "Global" : "Local";
+    }
+
+    // Assigned value as written in the source, or null.
+    public String value(int s) {
+        if (valueStart[s] == NONE) {
+            return null;
+        }
+        return values.substring(valueStart[s], valueEnd[s]);
+    }
+
+    public void print() {
+        print(System.out);
+    }
+
+    public void print(PrintStream out) {
+        out.println("\nSymbol Table:");
+        out.println("-------------------------------------------------------------");
+        out.printf("%-15s %-10s %-10s %-10s\n", "Name", "Type", "Scope", "Value");
+        out.println("-------------------------------------------------------------");
+        for (int s = 0; s < size; s++) {
+            String value = kind[s] == FUNCTION ? "N/A" : value(s);
+            out.println(String.format("%-15s %-10s %-10s %-10s", name(s), type(s), scope(s), value == null ? "N/A" : value));
+        }
+    }
+}
@@ -1,112 +1,232 @@
-import java.io.*;
-import java.util.*;
-import java.util.regex.*;
-
-class SymbolTableExtractor {
-    static class Symbol {
-        String name;
-        String type;
-        String scope;
-        String value; // Stores assigned value (if any)
-
-        Symbol(String name, String type, String scope, String value) {
-            this.name = name;
-            this.type = type;
-            this.scope = scope;
-            this.value = value;
-        }
-
-        @Override
-        public String toString() {
-            return String.format("%-15s %-10s %-10s %-10s", name, type, scope, value == null ? "N/A" : value);
-        }
-    }
-
-    static List<Symbol> symbolTable = new ArrayList<>();
-
-    // Regular expressions
-    static final String VARIABLE_PATTERN = "\\b(int|float|double|char|string)\\s+([^;]+);";
-    static final String FUNCTION_PATTERN = "\\b([a-zA-Z_][a-zA-Z0-9_]*)\\s*\\([^)]*\\)\\s*\\{";
-    static final String DEFINE_PATTERN = "#define\\s+([A-Z_]+)\\s+(.+)";
-
-    public static void main(String[] args) throws IOException {
-        String filename = "sample.c"; // Replace with your C file
-        extractSymbols(filename);
-        printSymbolTable();
-    }
-
-    static void extractSymbols(String filename) throws IOException {
-        File file = new File(filename);
-        BufferedReader br = new BufferedReader(new FileReader(file));
-
-        String line;
-        boolean insideFunction = false;
-        
-        while ((line = br.readLine()) != null) {
-            line = line.trim();
-
-            // Skip comments
-            if (line.startsWith("//") || line.startsWith("/*") || line.startsWith("*")) continue;
-
-            // Detect function definitions
-            Matcher funcMatcher = Pattern.compile(FUNCTION_PATTERN).matcher(line);
-            if (funcMatcher.find()) {
-                String functionName = funcMatcher.group(1);
-                symbolTable.add(new Symbol(functionName, "Function", "Global", "N/A"));
-                insideFunction = true;
-                continue;
-            }
-
-            // Detect variable declarations (handles multiple variables in one line)
-            Matcher varMatcher = Pattern.compile(VARIABLE_PATTERN).matcher(line);
-            if (varMatcher.find()) {
-                String type = varMatcher.group(1);
-                String declaration = varMatcher.group(2); // Full declaration part after data type
-
-                // Split multiple variables (comma-separated)
-                String[] variables = declaration.split(",");
-
-                for (String var : variables) {
-                    var = var.trim();
-                    String name, value = null;
-
-                    // Check if variable has an assignment
-                    if (var.contains("=")) {
-                        String[] parts = var.split("=");
-                        name = parts[0].trim();
-                        value = parts[1].trim();
-                    } else {
-                        name = var.trim();
-                    }
-
-                    String scope = insideFunction ? "Local" : "Global";
-                    symbolTable.add(new Symbol(name, type, scope, value));
-                }
-            }
-
-            // Detect constants using #define
-            Matcher defineMatcher = Pattern.compile(DEFINE_PATTERN).matcher(line);
-            if (defineMatcher.find()) {
-                String constantName = defineMatcher.group(1);
-                String constantValue = defineMatcher.group(2);
-                symbolTable.add(new Symbol(constantName, "Constant", "Global", constantValue));
-            }
-
-            // Detect end of function scope
-            if (line.equals("}")) {
-                insideFunction = false;
-            }
-        }
-        br.close();
-    }
-
-    static void printSymbolTable() {
-        System.out.println("\nSymbol Table:");
-        System.out.println("-------------------------------------------------------------");
-        System.out.printf("%-15s %-10s %-10s %-10s\n", "Name", "Type", "Scope", "Value");
-        System.out.println("-------------------------------------------------------------");
-        for (Symbol symbol : symbolTable) {
-            System.out.println(symbol);
-        }
-    }
-}
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+
+class SymbolTableExtractor {
+    private static final int NONE = -1;
+
+    private static final Set<String> TYPES = new HashSet<>(Arrays.asList(
+        "int", "float", "double", "char", "string", "bool", "void"
+    ));
+
+    public static void main(String[] args) throws IOException {
+        String filename = "sample.c"; // Replace with your C file
+        extractSymbols(filename).print();
+    }
+
+    static SymbolTable extractSymbols(String filename) throws IOException {
+        LexicalAnalyzer lexer = new LexicalAnalyzer();
+        lexer.setRecovering(true);
+        try {
+            return extractSymbols(lexer.tokenize(Paths.get(filename), new TokenBuffer()));
+        } catch (SyntaxError e) {
+            throw new IllegalStateException(e); // not thrown while recovering
+        }
+    }
+
+    /**
+     * Collects declarations from the tokens in one pass. The table opens a scope for every function
+     * body and nested block, so its symbols record how deeply they were declared.
+     */
+    static SymbolTable extractSymbols(TokenBuffer tokens) {
+        Pass pass = new Pass(tokens);
+        pass.run();
+        pass.table.trim();
+        return pass.table;
+    }
+
+    private static class Pass {
+        private final TokenBuffer tokens;
+        private final SymbolTable table;
+        private final int[] at; // indexes of the tokens that are not comments
+        private final int[] names; // table id of each of the buffer's symbol ids, or NONE before its first declaration
+        private final int n;
+        private int i;
+
+        Pass(TokenBuffer tokens) {
+            this.tokens = tokens;
+            this.table = new SymbolTable();
+            int[] at = new int[tokens.size()];
+            int n = 0;
+            for (int k = 0; k < tokens.size(); k++) {
+                TokenType type = tokens.type(k);
+                if (type != TokenType.COMMENT && type != TokenType.EOF) {
+                    at[n++] = k;
+                }
+            }
+            this.at = at;
+            this.n = n;
+            this.names = new int[tokens.getSymbols().size()];
+            Arrays.fill(names, NONE);
+        }
+
+        void run() {
+            boolean statementStart = true;
+            while (i < n) {
+                if (statementStart && is(i, "const")) {
+                    i++;
+                } else if (isDirective()) {
+                    define();
+                    statementStart = true;
+                } else if (statementStart && isType(i)) {
+                    declaration();
+                    statementStart = true;
+                } else if (statementStart && table.depth() == 0 && type(i) == TokenType.IDENTIFIER && is(i + 1, "(")) {
+                    function(i, i + 1);
+                    statementStart = true;
+                } else if (is(i, "{")) {
+                    table.enterScope();
+                    i++;
+                    statementStart = true;
+                } else if (is(i, "}")) {
+                    if (table.depth() > 0) {
+                        table.exitScope();
+                    }
+                    i++;
+                    statementStart = true;
+                } else {
+                    // a for header may open with a declaration
+                    statementStart = is(i, ";") || is(i, "(") && i > 0 && is(i - 1, "for");
+                    i++;
+                }
+            }
+        }
+
+        // type name(params) { ... }, type name(params); or type name [= value] {, name [= value]};
+        private void declaration() {
+            String type = text(i);
+            int j = i + 1;
+            if (type(j) == TokenType.IDENTIFIER && is(j + 1, "(")) {
+                function(j, j + 1);
+                return;
+            }
+            while (type(j) == TokenType.IDENTIFIER) {
+                int name = j;
+                j = skipBrackets(j + 1);
+                int value = NONE;
+                if (is(j, "=")) {
+                    value = j + 1;
+                    j = expressionEnd(j + 1);
+                }
+                declare(name, SymbolTable.VARIABLE, type, value, j);
+                if (!is(j, ",")) {
+                    break;
+                }
+                j++;
+            }
+            i = j;
+        }
+
+        // Function definition with its name at name and parameter list at open; prototypes are skipped.
+        private void function(int name, int open) {
+            int close = open + 1;
+            while (close < n && !is(close, ")")) {
+                close++;
+            }
+            if (!is(close + 1, "{")) {
+                i = close + 1;
+                return;
+            }
+            declare(name, SymbolTable.FUNCTION, null, NONE, NONE);
+            table.enterScope();
+            for (int j = open + 1; j < close; j++) {
+                if (isType(j) && type(j + 1) == TokenType.IDENTIFIER) {
+                    declare(j + 1, SymbolTable.PARAMETER, text(j), NONE, NONE);
+                    j++;
+                }
+            }
+            i = close + 2;
+        }
+
+        // # define NAME value, all on one line; '#' and upper-case names lex as ERROR tokens.
+        private boolean isDirective() {
+            return is(i, "#") && type(i) == TokenType.ERROR && is(i + 1, "define") && i + 2 < n
+                && line(i + 2) == line(i);
+        }
+
+        private void define() {
+            int line = line(i);
+            int j = i + 3;
+            while (j < n && line(j) == line) {
+                j++;
+            }
+            declare(i + 2, SymbolTable.CONSTANT, null, j > i + 3 ? i + 3 : NONE, j);
+            i = j;
+        }
+
+        // Declares the name at token j; the value, if any, is the source text of tokens [value, valueEnd).
+        private void declare(int j, byte kind, String type, int value, int valueEnd) {
+            int start = NONE;
+            int end = NONE;
+            if (value != NONE) {
+                start = value < valueEnd ? tokens.start(at[value]) : tokens.start(at[value - 1]) + tokens.length(at[value - 1]);
+                end = value < valueEnd ? tokens.start(at[valueEnd - 1]) + tokens.length(at[valueEnd - 1]) : start;
+            }
+            table.declare(name(at[j]), kind, type, tokens.getSource(), start, end);
+        }
+
+        /**
+         * The table's id for the name of token k. Identifiers carry the buffer's interned id, so each
+         * distinct name is copied into the table once; a #define name lexes as an ERROR token and has none.
+         */
+        private int name(int k) {
+            int symbol = tokens.symbol(k);
+            if (symbol == SymbolInterner.NONE) {
+                return table.intern(tokens.getSource(), tokens.start(k), tokens.start(k) + tokens.length(k));
+            }
+            if (names[symbol] == NONE) {
+                names[symbol] = table.intern(tokens.getSource(), tokens.start(k), tokens.start(k) + tokens.length(k));
+            }
+            return names[symbol];
+        }
+
+        // First token after a run of [...] groups starting at j.
+        private int skipBrackets(int j) {
+            while (is(j, "[")) {
+                while (j < n && !is(j, "]")) {
+                    j++;
+                }
+                j++;
+            }
+            return j;
+        }
+
+        // End (exclusive) of an initializer: the next ',' or ';' outside brackets.
+        private int expressionEnd(int j) {
+            int depth = 0;
+            for (; j < n; j++) {
+                if (is(j, "(") || is(j, "[") || is(j, "{")) {
+                    depth++;
+                } else if (is(j, ")") || is(j, "]") || is(j, "}")) {
+                    if (depth == 0) {
+                        break;
+                    }
+                    depth--;
+                } else if (depth == 0 && (is(j, ",") || is(j, ";"))) {
+                    break;
+                }
+            }
+            return j;
+        }
+
+        private boolean isType(int j) {
+            return type(j) == TokenType.KEYWORD && TYPES.contains(text(j));
+        }
+
+        private TokenType type(int j) {
+            return j < n ? tokens.type(at[j]) : TokenType.EOF;
+        }
+
+        private boolean is(int j, String text) {
+            return j < n && tokens.textEquals(at[j], text);
+        }
+
+        private String text(int j) {
+            return tokens.text(at[j]);
+        }
+
+        private int line(int j) {
+            return tokens.line(at[j]);
+        }
+    }
+}
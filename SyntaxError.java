@@ -0,0 +1,7 @@
+class SyntaxError extends Exception {
+    private static final long serialVersionUID = 1L;
+
+    public SyntaxError(String message) {
+        super(message);
+    }
+}
@@ -1,23 +1,51 @@
-class Token {
-    private TokenType type;
-    private String value;
-    private int line;
-    private int column;
-
-    public Token(TokenType type, String value, int line, int column) {
-        this.type = type;
-        this.value = value;
-        this.line = line;
-        this.column = column;
-    }
-
-    public TokenType getType() { return type; }
-    public String getValue() { return value; }
-    public int getLine() { return line; }
-    public int getColumn() { return column; }
-
-    @Override
-    public String toString() {
-        return String.format("%s: %s at line %d, column %d", type, value, line, column);
-    }
-}
\ No newline at end of file
+class Token {
+    private TokenType type;
+    private String value;
+    private int line;
+    private int column;
+    // Position of the text in its source (offset is -1 when unknown); source is dropped once the text is materialized.
+    private CharSequence source;
+    private int offset;
+    private int length;
+
+    public Token(TokenType type, String value, int line, int column) {
+        this.type = type;
+        this.value = value;
+        this.offset = -1;
+        this.length = value.length();
+        this.line = line;
+        this.column = column;
+    }
+
+    // Token whose text is read from source[offset, offset + length) the first time it is asked for.
+    public Token(TokenType type, CharSequence source, int offset, int length, int line, int column) {
+        this.type = type;
+        this.source = source;
+        this.offset = offset;
+        this.length = length;
+        this.line = line;
+        this.column = column;
+    }
+
+    public TokenType getType() { return type; }
+    public int getLine() { return line; }
+    public int getColumn() { return column; }
+    public int getOffset() { return offset; }
+    public int getLength() { return length; }
+
+    public String getValue() {
+        if (value == null) {
+            value = source.subSequence(offset, offset + length).toString();
+            if (type == TokenType.DECIMAL) {
+                value = LexicalAnalyzer.roundDecimal(value);
+            }
+            source = null;
+        }
+        return value;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: %s at line %d, column %d", type, getValue(), line, column);
+    }
+}
@@ -0,0 +1,273 @@
+import java.util.*;
+
+/**
+ * Tokens stored column-wise in parallel primitive arrays (kind, start, length, line, column) over
+ * one source, so lexing a file allocates a few arrays instead of one object per token. Read it
+ * either by index or with the cursor: {@code while (buffer.next()) { buffer.type() ... }}.
+ * {@link Token} objects are only created on request, as views. Identifiers are interned as they
+ * are added, so later stages can compare names by {@link #symbol(int)} id. The ids belong to the
+ * buffer's current source: reset forgets them, so a reused buffer's names do not pile up.
+ *
+ * <p>For re-lexing after an edit ({@link LexicalAnalyzer#relex}) the arrays hold a gap: tokens are
+ * added at the gap, and the tokens after it sit at the end of the arrays with start and line stored
+ * relative to startBase and lineBase. Shifting every token after an edit is then a change to the two
+ * bases, and moving the gap only copies the tokens between its old and new position. Without edits
+ * the gap stays at the end and the arrays are plain lists.
+ */
+class TokenBuffer {
+    private static final TokenType[] TYPES = TokenType.values();
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private CharSequence source;
+    private byte[] kind;
+    private int[] start;
+    private int[] length;
+    private int[] line;
+    private int[] column;
+    private int[] symbol;
+    private final SymbolInterner symbols = new SymbolInterner();
+    private int size;
+    private int gap;       // tokens [0, gap) are at the front of the arrays, the rest at the back
+    private int startBase; // added to the stored start of tokens after the gap
+    private int lineBase;  // and to their stored line
+    private int cursor = -1;
+
+    public TokenBuffer() {
+        this(INITIAL_CAPACITY);
+    }
+
+    public TokenBuffer(int capacity) {
+        capacity = Math.max(capacity, 1);
+        kind = new byte[capacity];
+        start = new int[capacity];
+        length = new int[capacity];
+        line = new int[capacity];
+        column = new int[capacity];
+        symbol = new int[capacity];
+    }
+
+    // Empties the buffer for tokens of a new source; the arrays are kept, the interned names are not.
+    public void reset(CharSequence source) {
+        this.source = source;
+        symbols.clear();
+        size = 0;
+        gap = 0;
+        cursor = -1;
+    }
+
+    // Adds a token at the gap: at the end, unless an edit is being re-lexed.
+    public void add(TokenType type, int start, int length, int line, int column) {
+        if (size == kind.length) {
+            grow();
+        }
+        this.kind[gap] = (byte) type.ordinal();
+        this.start[gap] = start;
+        this.length[gap] = length;
+        this.line[gap] = line;
+        this.column[gap] = column;
+        this.symbol[gap] = type == TokenType.IDENTIFIER ? symbols.intern(source, start, start + length) : SymbolInterner.NONE;
+        gap++;
+        size++;
+    }
+
+    /**
+     * Appends tokens [from, other.size()) of other, moving each one down by lineOffset lines.
+     * Identifiers are re-interned here, so their ids are the same as if they had been added one by one.
+     */
+    public void append(TokenBuffer other, int from, int lineOffset) {
+        moveGap(size);
+        other.moveGap(other.size);
+        int n = other.size - from;
+        while (size + n > kind.length) {
+            grow();
+        }
+        System.arraycopy(other.kind, from, kind, size, n);
+        System.arraycopy(other.start, from, start, size, n);
+        System.arraycopy(other.length, from, length, size, n);
+        System.arraycopy(other.column, from, column, size, n);
+        int[] remap = new int[other.symbols.size()];
+        Arrays.fill(remap, SymbolInterner.NONE);
+        for (int i = 0; i < n; i++) {
+            line[size + i] = other.line[from + i] + lineOffset;
+            int id = other.symbol[from + i];
+            if (id != SymbolInterner.NONE && remap[id] == SymbolInterner.NONE) {
+                remap[id] = symbols.intern(other.symbols.name(id));
+            }
+            symbol[size + i] = id == SymbolInterner.NONE ? id : remap[id];
+        }
+        size += n;
+        gap = size;
+    }
+
+    /**
+     * Starts re-lexing source from token from on: the gap moves there, and tokens [from, size())
+     * become pending, the old tokens that new ones are added in front of. Each pending token is
+     * either dropped or, once lexing is back in step with the old tokens, kept by shiftPending.
+     */
+    public void edit(int from, CharSequence source) {
+        moveGap(from);
+        this.source = source;
+        cursor = -1;
+    }
+
+    // Pending tokens left, and the position of the first one, as it was before the edit.
+    public int pending() { return size - gap; }
+    public int pendingStart() { return start[gap + hole()] + startBase; }
+    public int pendingLine() { return line[gap + hole()] + lineBase; }
+    public int pendingColumn() { return column[gap + hole()]; }
+
+    public void dropPending() {
+        size--;
+    }
+
+    /**
+     * Keeps the pending tokens, moving them by startDelta characters and lineDelta lines; the ones
+     * on the first pending token's line also move by columnDelta columns.
+     */
+    public void shiftPending(int startDelta, int lineDelta, int columnDelta) {
+        int from = gap + hole();
+        int first = line[from];
+        for (int p = from; p < kind.length && line[p] == first; p++) {
+            column[p] += columnDelta;
+        }
+        startBase += startDelta;
+        lineBase += lineDelta;
+    }
+
+    private int hole() {
+        return kind.length - size;
+    }
+
+    // Moves the gap to index to, rebasing the tokens that cross it.
+    private void moveGap(int to) {
+        int hole = hole();
+        if (to < gap) {
+            int n = gap - to;
+            move(to, to + hole, n);
+            for (int p = to + hole; p < gap + hole; p++) {
+                start[p] -= startBase;
+                line[p] -= lineBase;
+            }
+        } else if (to > gap) {
+            int n = to - gap;
+            move(gap + hole, gap, n);
+            for (int p = gap; p < to; p++) {
+                start[p] += startBase;
+                line[p] += lineBase;
+            }
+        }
+        gap = to;
+    }
+
+    private void move(int from, int to, int n) {
+        System.arraycopy(kind, from, kind, to, n);
+        System.arraycopy(start, from, start, to, n);
+        System.arraycopy(length, from, length, to, n);
+        System.arraycopy(line, from, line, to, n);
+        System.arraycopy(column, from, column, to, n);
+        System.arraycopy(symbol, from, symbol, to, n);
+    }
+
+    private void grow() {
+        int capacity = kind.length + (kind.length >> 1) + 1;
+        int after = size - gap;
+        kind = grow(kind, capacity, after);
+        start = grow(start, capacity, after);
+        length = grow(length, capacity, after);
+        line = grow(line, capacity, after);
+        column = grow(column, capacity, after);
+        symbol = grow(symbol, capacity, after);
+    }
+
+    // array copied to capacity, with its last after elements moved to the new end.
+    private static byte[] grow(byte[] array, int capacity, int after) {
+        byte[] grown = Arrays.copyOf(array, capacity);
+        System.arraycopy(array, array.length - after, grown, capacity - after, after);
+        return grown;
+    }
+
+    private static int[] grow(int[] array, int capacity, int after) {
+        int[] grown = Arrays.copyOf(array, capacity);
+        System.arraycopy(array, array.length - after, grown, capacity - after, after);
+        return grown;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public CharSequence getSource() {
+        return source;
+    }
+
+    public TokenType type(int i) { return TYPES[kind[at(i)]]; }
+    public int start(int i) { return i < gap ? start[i] : start[i + hole()] + startBase; }
+    public int length(int i) { return length[at(i)]; }
+    public int line(int i) { return i < gap ? line[i] : line[i + hole()] + lineBase; }
+    public int column(int i) { return column[at(i)]; }
+    // Interned id of an identifier's name, or SymbolInterner.NONE for other tokens.
+    public int symbol(int i) { return symbol[at(i)]; }
+
+    // Array index of token i.
+    private int at(int i) {
+        return i < gap ? i : i + hole();
+    }
+
+    public SymbolInterner getSymbols() {
+        return symbols;
+    }
+
+    // Token text, with decimals rounded as in Token.getValue().
+    public String text(int i) {
+        String text = source.subSequence(start(i), start(i) + length(i)).toString();
+        return kind[at(i)] == TokenType.DECIMAL.ordinal() ? LexicalAnalyzer.roundDecimal(text) : text;
+    }
+
+    // True when the token's text equals s, without materializing it.
+    public boolean textEquals(int i, CharSequence s) {
+        int from = start(i);
+        if (length(i) != s.length()) {
+            return false;
+        }
+        for (int k = 0; k < s.length(); k++) {
+            if (source.charAt(from + k) != s.charAt(k)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public Token token(int i) {
+        return new Token(type(i), source, start(i), length(i), line(i), column(i));
+    }
+
+    public List<Token> toList() {
+        List<Token> tokens = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            tokens.add(token(i));
+        }
+        return tokens;
+    }
+
+    // Cursor: next() moves to the following token and returns false past the last one.
+    public boolean next() {
+        if (cursor < size) {
+            cursor++;
+        }
+        return cursor < size;
+    }
+
+    public void rewind() {
+        cursor = -1;
+    }
+
+    public int position() { return cursor; }
+    public TokenType type() { return type(cursor); }
+    public int start() { return start(cursor); }
+    public int length() { return length(cursor); }
+    public int line() { return line(cursor); }
+    public int column() { return column(cursor); }
+    public int symbol() { return symbol(cursor); }
+    public String text() { return text(cursor); }
+    public Token token() { return token(cursor); }
+}
@@ -0,0 +1,138 @@
+import java.io.*;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.util.*;
+
+/**
+ * Pull-based tokenizer over a Reader. Input is read into a fixed-size buffer that is refilled as
+ * tokens are consumed, so memory stays bounded by the buffer size (or the longest single token)
+ * rather than the size of the input. Produces the same tokens as {@link LexicalAnalyzer#tokenize},
+ * ending with an EOF token.
+ */
+class TokenStream implements Iterator<Token>, Closeable {
+    private static final int BUFFER_SIZE = 8192;
+
+    private final Reader in;
+    private char[] buffer;
+    private CharBuffer window;
+    private int pos;
+    private int limit;
+    private boolean endOfInput;
+    private boolean done;
+    private int currentLine = 1;
+    private int currentColumn = 1;
+
+    public TokenStream(Reader in) {
+        this(in, BUFFER_SIZE);
+    }
+
+    public TokenStream(Reader in, int bufferSize) {
+        if (bufferSize <= 0) {
+            throw new IllegalArgumentException("buffer size must be positive: " + bufferSize);
+        }
+        this.in = in;
+        this.buffer = new char[bufferSize];
+        this.window = CharBuffer.wrap(buffer);
+    }
+
+    public TokenStream(ReadableByteChannel channel, Charset charset) {
+        this(Channels.newReader(channel, charset.newDecoder(), BUFFER_SIZE), BUFFER_SIZE);
+    }
+
+    /**
+     * Next token, or the EOF token once the input is exhausted (and again on every call after it).
+     */
+    public Token nextToken() throws IOException, SyntaxError {
+        if (done) {
+            return new Token(TokenType.EOF, "", currentLine, currentColumn);
+        }
+        while (true) {
+            if (pos == limit && !fill()) {
+                done = true;
+                return new Token(TokenType.EOF, "", currentLine, currentColumn);
+            }
+            long match = LexicalAnalyzer.TABLE.match(window, pos, limit, endOfInput);
+            if (match == ScannerTable.MORE) {
+                // the token may run past the buffered text
+                fill();
+                continue;
+            }
+            Token token = LexicalAnalyzer.toToken(match, window, pos, currentLine, currentColumn);
+            advance(ScannerTable.end(match));
+            if (token != null) {
+                return token;
+            }
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        return !done;
+    }
+
+    // Iterator view of nextToken(); lexical errors surface as an unchecked LexicalException.
+    @Override
+    public Token next() {
+        if (done) {
+            throw new NoSuchElementException();
+        }
+        try {
+            return nextToken();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (SyntaxError e) {
+            done = true;
+            throw new LexicalException(e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    // Moves the unconsumed text to the front of the buffer and reads more; false when nothing is left.
+    private boolean fill() throws IOException {
+        if (pos > 0) {
+            System.arraycopy(buffer, pos, buffer, 0, limit - pos);
+            limit -= pos;
+            pos = 0;
+        }
+        if (limit == buffer.length) {
+            // a single token longer than the buffer
+            buffer = Arrays.copyOf(buffer, buffer.length * 2);
+            window = CharBuffer.wrap(buffer);
+        }
+        if (!endOfInput) {
+            int n = in.read(buffer, limit, buffer.length - limit);
+            if (n < 0) {
+                endOfInput = true;
+            } else {
+                limit += n;
+            }
+        }
+        return pos < limit;
+    }
+
+    private void advance(int end) {
+        while (pos < end) {
+            if (buffer[pos] == '\n') {
+                currentLine++;
+                currentColumn = 1;
+            } else {
+                currentColumn++;
+            }
+            pos++;
+        }
+    }
+}
+
+class LexicalException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    public LexicalException(SyntaxError cause) {
+        super(cause.getMessage(), cause);
+    }
+}
@@ -1,12 +1,13 @@
-enum TokenType {
-    INTEGER,
-    DECIMAL,
-    BOOLEAN,
-    CHARACTER,
-    IDENTIFIER,
-    OPERATOR,
-    LITERAL,
-    KEYWORD,
-    COMMENT,
-    EOF
-}
\ No newline at end of file
+enum TokenType {
+    INTEGER,
+    DECIMAL,
+    BOOLEAN,
+    CHARACTER,
+    IDENTIFIER,
+    OPERATOR,
+    LITERAL,
+    KEYWORD,
+    COMMENT,
+    ERROR,
+    EOF
+}
@@ -0,0 +1,34 @@
+import java.util.Arrays;
+
+/**
+ * Visited flags for a walk over numbered nodes, kept by the walker rather than in the graph, so
+ * walking an automaton never modifies it and threads can walk it at once with marks of their own.
+ * A node is marked by stamping it with the current epoch: starting the next walk is one increment
+ * instead of a second pass to clear the flags.
+ */
+public class VisitMarks {
+	private int[] stamp;
+	private int epoch = 1;
+
+	public VisitMarks(int capacity) {
+		stamp = new int[Math.max(capacity, 1)];
+	}
+
+	// Starts a new walk: every node is unvisited again.
+	public void clear() {
+		if (++epoch == 0) {
+			Arrays.fill(stamp, 0);
+			epoch = 1;
+		}
+	}
+
+	// Marks node as visited in this walk; false if it already was.
+	public boolean visit(int node) {
+		if (node >= stamp.length)
+			stamp = Arrays.copyOf(stamp, Math.max(node + 1, stamp.length * 2));
+		if (stamp[node] == epoch)
+			return false;
+		stamp[node] = epoch;
+		return true;
+	}
+}
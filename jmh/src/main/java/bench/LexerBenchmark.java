@@ -0,0 +1,47 @@
+package bench;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * tokenize(source, TokenBuffer) with the buffer reused, by source size and errors per 1000 lines.
+ * Besides ops/s, JMH reports the bytes/s and tokens/s counters; -prof gc adds the bytes allocated
+ * per run (gc.alloc.rate.norm).
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class LexerBenchmark {
+    @Param({"64", "1024", "16384"})
+    public int kb;
+
+    @Param({"0", "100"})
+    public int errors;
+
+    private Callable<Object> run;
+    private final long[] units = new long[2];
+
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class Rates {
+        public long bytes;
+        public long tokens;
+    }
+
+    @Setup
+    public void setup() throws Exception {
+        run = Workloads.get("lexer", kb + "/" + errors, units);
+    }
+
+    @Benchmark
+    public Object tokenize(Rates rates) throws Exception {
+        rates.bytes += units[0];
+        rates.tokens += units[1];
+        return run.call();
+    }
+}
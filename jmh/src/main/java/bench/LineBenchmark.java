@@ -0,0 +1,58 @@
+package bench;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Symbol extraction over a lexed 1 MB source, and a recovering lex with its diagnostics by errors
+ * per 1000 lines. The lines counter gives lines/s, from which ns per line is 1e9 / lines.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class LineBenchmark {
+    private Callable<Object> symbols;
+    private final long[] units = new long[2];
+
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class Rates {
+        public long lines;
+    }
+
+    @State(Scope.Thread)
+    public static class Recovering {
+        @Param({"0", "10", "100"})
+        public int errors;
+
+        private Callable<Object> run;
+        private final long[] units = new long[2];
+
+        @Setup
+        public void setup() throws Exception {
+            run = Workloads.get("errors", String.valueOf(errors), units);
+        }
+    }
+
+    @Setup
+    public void setup() throws Exception {
+        symbols = Workloads.get("symbols", "1024", units);
+    }
+
+    @Benchmark
+    public Object symbols(Rates rates) throws Exception {
+        rates.lines += units[1];
+        return symbols.call();
+    }
+
+    @Benchmark
+    public Object errors(Recovering recovering, Rates rates) throws Exception {
+        rates.lines += recovering.units[1];
+        return recovering.run.call();
+    }
+}
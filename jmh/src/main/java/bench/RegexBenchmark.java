@@ -0,0 +1,36 @@
+package bench;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * new NFA(re).build plus new DFA(nfa).createDFA on generated patterns, by operand count and
+ * nesting depth. 128 operands at depth 16 takes over 100 ms a run and is left to java Benchmarks regex.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RegexBenchmark {
+    @Param({"8", "32", "128"})
+    public int operands;
+
+    @Param({"1", "4"})
+    public int depth;
+
+    private Callable<Object> run;
+
+    @Setup
+    public void setup() throws Exception {
+        run = Workloads.get("regex", operands + "x" + depth, new long[2]);
+    }
+
+    @Benchmark
+    public Object compile() throws Exception {
+        return run.call();
+    }
+}